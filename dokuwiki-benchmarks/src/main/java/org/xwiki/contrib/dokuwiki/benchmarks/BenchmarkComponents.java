@@ -0,0 +1,65 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+
+/**
+ * Helpers shared by the benchmarks.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public final class BenchmarkComponents
+{
+    private static final String WARM_UP_CORPUS = "/org/xwiki/contrib/dokuwiki/syntax/internal/parser/warmup.txt";
+
+    private BenchmarkComponents()
+    {
+        // Utility class.
+    }
+
+    /**
+     * @return a component manager with all components found in the classpath
+     */
+    public static EmbeddableComponentManager createComponentManager()
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(BenchmarkComponents.class.getClassLoader());
+        return componentManager;
+    }
+
+    /**
+     * @return a DokuWiki page that uses all the syntax supported by the parser, the corpus that is also used to warm
+     *     up the parser
+     * @throws IOException when the page cannot be read
+     */
+    public static String readSyntaxPage() throws IOException
+    {
+        try (InputStream stream = BenchmarkComponents.class.getResourceAsStream(WARM_UP_CORPUS)) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiConverterListener;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.VoidListener;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+/**
+ * Resolve the references of DokuWiki links and media to XWiki references.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DokuWikiConverterListenerBenchmark
+{
+    private static final String[] LINKS = {
+        "syntax",
+        "wiki:syntax",
+        "wiki:syntax#internal",
+        ".:sibling",
+        "..:parent:page",
+        ":top:level:namespace:",
+        "Ünïcödé Pâge Nàme",
+        "#section",
+        "http://www.google.com",
+        "andi@splitbrain.org"
+    };
+
+    private static final String[] MEDIA = {
+        "wiki:dokuwiki-128.png",
+        "dokuwiki-128.png",
+        ":wiki:sub space:Image Fïle.jpg"
+    };
+
+    private EmbeddableComponentManager componentManager;
+
+    private DokuWikiConverterListener converterListener;
+
+    private ResourceReference[] links;
+
+    private ResourceReference[] media;
+
+    /**
+     * Create the listener and the references to resolve.
+     *
+     * @throws Exception when the components cannot be initialized
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.createComponentManager();
+        this.converterListener = this.componentManager.getInstance(DokuWikiConverterListener.class);
+        this.converterListener.setWrappedListener(new VoidListener());
+        this.converterListener.setDokuWikiReference("wiki:namespace:page");
+
+        this.links = new ResourceReference[LINKS.length];
+        for (int i = 0; i < LINKS.length; i++) {
+            this.links[i] = new ResourceReference(LINKS[i], ResourceType.URL);
+        }
+
+        this.media = new ResourceReference[MEDIA.length];
+        for (int i = 0; i < MEDIA.length; i++) {
+            this.media[i] = new ResourceReference(MEDIA[i], ResourceType.ATTACHMENT);
+        }
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * Resolve the references of links, once for the beginning and once for the end of each link like the parser does.
+     */
+    @Benchmark
+    public void resolveLinks()
+    {
+        for (ResourceReference link : this.links) {
+            this.converterListener.beginLink(link, false, Listener.EMPTY_PARAMETERS);
+            this.converterListener.endLink(link, false, Listener.EMPTY_PARAMETERS);
+        }
+    }
+
+    /**
+     * Resolve the references of images.
+     */
+    @Benchmark
+    public void resolveMedia()
+    {
+        for (ResourceReference reference : this.media) {
+            this.converterListener.onImage(reference, false, Listener.EMPTY_PARAMETERS);
+        }
+    }
+}
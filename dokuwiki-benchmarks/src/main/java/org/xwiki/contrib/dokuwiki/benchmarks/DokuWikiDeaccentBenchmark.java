@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiDeaccent;
+
+/**
+ * Remove the accents of page names like DokuWiki does when cleaning page ids.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DokuWikiDeaccentBenchmark
+{
+    private static final String[] NAMES = {
+        "start",
+        "wiki:syntax",
+        "projects:2024:meeting_notes",
+        "Ünïcödé Pâge Nàme",
+        "équipe:réunion_générale",
+        "Straße:Größe",
+        "Łódź:Kraków"
+    };
+
+    private EmbeddableComponentManager componentManager;
+
+    private DokuWikiDeaccent deaccent;
+
+    /**
+     * Look up the component.
+     *
+     * @throws Exception when the components cannot be initialized
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.createComponentManager();
+        this.deaccent = this.componentManager.getInstance(DokuWikiDeaccent.class);
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * @param blackhole consumes the results
+     */
+    @Benchmark
+    public void deaccent(Blackhole blackhole)
+    {
+        for (String name : NAMES) {
+            blackhole.consume(this.deaccent.deaccent(name));
+        }
+    }
+}
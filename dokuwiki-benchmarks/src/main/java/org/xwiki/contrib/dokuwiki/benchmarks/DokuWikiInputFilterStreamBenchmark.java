@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.dokuwiki.text.input.DokuWikiInputProperties;
+import org.xwiki.filter.input.BeanInputFilterStream;
+import org.xwiki.filter.input.BeanInputFilterStreamFactory;
+import org.xwiki.filter.input.DefaultFileInputSource;
+import org.xwiki.filter.input.InputFilterStreamFactory;
+
+/**
+ * Read a whole DokuWiki installation with the DokuWiki Text input filter, including the conversion of all pages to
+ * XWiki syntax.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DokuWikiInputFilterStreamBenchmark
+{
+    /**
+     * The DokuWiki installation to read. The default is the installation used by the tests of the DokuWiki Text
+     * module, relative to the directory of this module.
+     */
+    @Param("../dokuwiki-text/src/test/resources/dokuwikitext/dokuwiki-support-folder")
+    private String source;
+
+    private EmbeddableComponentManager componentManager;
+
+    private BeanInputFilterStreamFactory<DokuWikiInputProperties> factory;
+
+    /**
+     * Look up the filter stream factory.
+     *
+     * @throws Exception when the components cannot be initialized
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        File folder = new File(this.source);
+        if (!folder.isDirectory()) {
+            throw new IllegalArgumentException(
+                String.format("[%s] is not a directory, set the [source] parameter", folder.getAbsolutePath()));
+        }
+
+        this.componentManager = BenchmarkComponents.createComponentManager();
+        this.factory = this.componentManager.getInstance(InputFilterStreamFactory.class,
+            DokuWikiInputProperties.FILTER_STREAM_TYPE_STRING);
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * @throws Exception when reading fails
+     */
+    @Benchmark
+    public void read() throws Exception
+    {
+        DokuWikiInputProperties properties = new DokuWikiInputProperties();
+        properties.setSource(new DefaultFileInputSource(new File(this.source)));
+
+        try (BeanInputFilterStream<DokuWikiInputProperties> stream = this.factory.createInputFilterStream(properties)) {
+            // The events are dropped, the pages are parsed and converted while reading nevertheless.
+            stream.read(new Object());
+        }
+    }
+}
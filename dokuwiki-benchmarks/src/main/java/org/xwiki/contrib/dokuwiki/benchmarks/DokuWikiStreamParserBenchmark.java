@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.benchmarks;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiParserConfiguration;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiStreamParser;
+import org.xwiki.rendering.listener.VoidListener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+
+/**
+ * Parse a DokuWiki page with each of the parsing strategies of {@link DokuWikiStreamParser}.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DokuWikiStreamParserBenchmark
+{
+    /**
+     * The parsing strategies.
+     */
+    public enum Engine
+    {
+        /**
+         * Build a parse tree and visit it.
+         */
+        TREE,
+
+        /**
+         * Generate the events directly from the tokens.
+         */
+        SINGLE_PASS,
+
+        /**
+         * Split the input in chunks that are parsed in parallel.
+         */
+        PARALLEL
+    }
+
+    @Param
+    private Engine engine;
+
+    /**
+     * The number of times the syntax page is repeated in the parsed document.
+     */
+    @Param({ "1", "100" })
+    private int repetitions;
+
+    private EmbeddableComponentManager componentManager;
+
+    private StreamParser parser;
+
+    private String content;
+
+    /**
+     * Configure the parser and load the page.
+     *
+     * @throws Exception when the components cannot be initialized
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.createComponentManager();
+
+        DokuWikiParserConfiguration configuration =
+            this.componentManager.getInstance(DokuWikiParserConfiguration.class);
+        configuration.setSinglePass(this.engine == Engine.SINGLE_PASS);
+        if (this.engine == Engine.PARALLEL) {
+            configuration.setParallelThreshold(1);
+            configuration.setParallelChunkSize(64 * 1024);
+        }
+
+        this.parser = this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+        this.content = BenchmarkComponents.readSyntaxPage().repeat(this.repetitions);
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * @throws ParseException when the page cannot be parsed
+     */
+    @Benchmark
+    public void parse() throws ParseException
+    {
+        this.parser.parse(new StringReader(this.content), new VoidListener());
+    }
+}
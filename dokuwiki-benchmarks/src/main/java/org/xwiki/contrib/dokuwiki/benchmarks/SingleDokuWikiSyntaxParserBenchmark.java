@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.SingleDokuWikiSyntaxParser;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.VoidListener;
+
+/**
+ * Parse plain text, links and images with the parsers that the DokuWiki parser uses for them.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SingleDokuWikiSyntaxParserBenchmark
+{
+    private static final String PROSE = "DokuWiki is a simple to use and highly versatile Open Source wiki software "
+        + "that doesn't require a database. It is loved by users for its clean and readable syntax. The ease of "
+        + "maintenance, backup and integration makes it an administrator's favorite. Built in access controls and "
+        + "authentication connectors make DokuWiki especially useful in the enterprise context (and the large "
+        + "number of plugins contributed by its vibrant community allow for a broad range of use cases beyond a "
+        + "traditional wiki).";
+
+    private static final String[] LINKS = {
+        "wiki:syntax",
+        "wiki:syntax#internal|this Link",
+        "http://www.google.com|This Link points to google",
+        "doku>interwiki|Interwiki links",
+        "..:parent:page",
+        "mailto:andi@splitbrain.org",
+        "wiki:syntax|{{wiki:dokuwiki-128.png}}"
+    };
+
+    private static final String[] IMAGES = {
+        "wiki:dokuwiki-128.png",
+        "wiki:dokuwiki-128.png?50",
+        " wiki:dokuwiki-128.png?200x50 ",
+        "wiki:dokuwiki-128.png |This is the caption",
+        "https://secure.php.net/images/php.gif?200x50&nolink",
+        "wiki:dokuwiki-128.png?linkonly"
+    };
+
+    private EmbeddableComponentManager componentManager;
+
+    private SingleDokuWikiSyntaxParser inlinePlainParser;
+
+    private SingleDokuWikiSyntaxParser linkParser;
+
+    private SingleDokuWikiSyntaxParser imageParser;
+
+    private final Listener listener = new VoidListener();
+
+    /**
+     * Look up the parsers.
+     *
+     * @throws Exception when the components cannot be initialized
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.createComponentManager();
+        this.inlinePlainParser = this.componentManager.getInstance(SingleDokuWikiSyntaxParser.class, "inline/plain");
+        this.linkParser = this.componentManager.getInstance(SingleDokuWikiSyntaxParser.class, "link");
+        this.imageParser = this.componentManager.getInstance(SingleDokuWikiSyntaxParser.class, "image");
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * Parse a paragraph of prose.
+     */
+    @Benchmark
+    public void inlinePlain()
+    {
+        this.inlinePlainParser.parse(PROSE, this.listener);
+    }
+
+    /**
+     * Parse the content of typical links.
+     */
+    @Benchmark
+    public void link()
+    {
+        for (String link : LINKS) {
+            this.linkParser.parse(link, this.listener);
+        }
+    }
+
+    /**
+     * Parse the content of typical images.
+     */
+    @Benchmark
+    public void image()
+    {
+        for (String image : IMAGES) {
+            this.imageParser.parse(image, this.listener);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.nio.CharBuffer;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+/**
+ * Char stream over an array of characters that provides views on parts of the array, such that the text of tokens can
+ * be accessed without copying it.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class CharArrayCharStream extends ANTLRInputStream
+{
+    /**
+     * @param input the input, the characters are copied once into an array
+     */
+    public CharArrayCharStream(String input)
+    {
+        super(input);
+    }
+
+    /**
+     * @param data the characters of the input, the array isn't copied and must thus not be modified
+     * @param length the number of characters of the array to use
+     */
+    public CharArrayCharStream(char[] data, int length)
+    {
+        super(data, length);
+    }
+
+    /**
+     * @param start the index of the first character
+     * @param stop the index of the last character, inclusive like the stop index of a token
+     * @return a view on the characters between the given indexes, empty if the stop index is before the start index
+     */
+    public CharSequence getCharSequence(int start, int stop)
+    {
+        return CharBuffer.wrap(this.data, start, Math.max(0, stop - start + 1));
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.antlr.v4.runtime.Token;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Splits DokuWiki content into groups of blocks that can be parsed independently of each other.
+ * <p>
+ * A group starts with a heading or with the first block after an empty line. Both close all open blocks, formatting,
+ * lists and quotes, so the events of the content are the events of the groups, apart from the section events that
+ * are implied by the headings. As the splitting is based on the tokens of the whole content, a group never starts
+ * inside a multi-line token like a code block.
+ * <p>
+ * When the content is a modified version of previously split content, only the part around the modification is
+ * lexed again. Lexing is deterministic from the start of a token, so the groups before the modification are kept as
+ * long as lexing them didn't look at the modified characters, and the groups after the modification are kept as soon
+ * as a group starts at the same position in the unmodified rest of the content.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@Component(roles = DokuWikiBlockSplitter.class)
+@Singleton
+public class DokuWikiBlockSplitter
+{
+    private static final String LINE_BREAK = "\n";
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The groups of blocks of some content.
+     */
+    public static final class BlockGroups
+    {
+        private final String content;
+
+        /**
+         * The index in the content where each group starts, which is also the index of the token of the first block
+         * of the group in the padded input of the lexer.
+         */
+        private int[] starts = new int[INITIAL_CAPACITY];
+
+        /**
+         * The highest index in the padded input that was read by the lexer to find the start of each group.
+         */
+        private int[] lookaheads = new int[INITIAL_CAPACITY];
+
+        private int count;
+
+        private BlockGroups(String content)
+        {
+            this.content = content;
+        }
+
+        private void add(int start, int lookahead)
+        {
+            if (this.count == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, this.count * 2);
+                this.lookaheads = Arrays.copyOf(this.lookaheads, this.count * 2);
+            }
+
+            this.starts[this.count] = start;
+            this.lookaheads[this.count] = lookahead;
+            this.count++;
+        }
+
+        /**
+         * @return the content that has been split
+         */
+        public String getContent()
+        {
+            return this.content;
+        }
+
+        /**
+         * @return the number of groups, at least one
+         */
+        public int size()
+        {
+            return this.count;
+        }
+
+        /**
+         * @param index the index of the group
+         * @return the content of the group, the concatenation of all groups is the content
+         */
+        public String get(int index)
+        {
+            int end = index + 1 < this.count ? this.starts[index + 1] : this.content.length();
+            return this.content.substring(this.starts[index], end);
+        }
+    }
+
+    /**
+     * Char stream that remembers the highest index that has been read.
+     */
+    private static final class LookaheadTrackingCharStream extends CharArrayCharStream
+    {
+        private int maxIndex = -1;
+
+        LookaheadTrackingCharStream(char[] data)
+        {
+            super(data, data.length);
+        }
+
+        @Override
+        public int LA(int i)
+        {
+            int index = this.p + i - 1;
+            if (i > 0 && index > this.maxIndex) {
+                this.maxIndex = index;
+            }
+
+            return super.LA(i);
+        }
+    }
+
+    @Inject
+    private DokuWikiGrammarCache grammarCache;
+
+    /**
+     * @param content the DokuWiki content
+     * @return the groups of blocks of the content
+     */
+    public BlockGroups split(String content)
+    {
+        return split(content, null);
+    }
+
+    /**
+     * @param content the DokuWiki content
+     * @param previous the groups of blocks of a previous version of the content, {@code null} if there is none
+     * @return the groups of blocks of the content, the same as when splitting the content without a previous version
+     */
+    public BlockGroups split(String content, BlockGroups previous)
+    {
+        if (previous != null && previous.content.equals(content)) {
+            return previous;
+        }
+
+        BlockGroups groups = new BlockGroups(content);
+        int suffixStart = Integer.MAX_VALUE;
+        int shift = 0;
+
+        if (previous == null) {
+            groups.add(0, -1);
+        } else {
+            String previousContent = previous.content;
+            int maxLength = Math.min(previousContent.length(), content.length());
+            int prefixLength = 0;
+            while (prefixLength < maxLength && previousContent.charAt(prefixLength) == content.charAt(prefixLength)) {
+                prefixLength++;
+            }
+            int suffixLength = 0;
+            while (suffixLength < maxLength - prefixLength && previousContent.charAt(
+                previousContent.length() - 1 - suffixLength) == content.charAt(content.length() - 1 - suffixLength)) {
+                suffixLength++;
+            }
+            suffixStart = content.length() - suffixLength;
+            shift = content.length() - previousContent.length();
+
+            // Keep the groups that were found without reading the first modified character. The padding shifts the
+            // indexes of the lexer by one.
+            int resumeGroup = 0;
+            while (resumeGroup + 1 < previous.count && previous.lookaheads[resumeGroup + 1] <= prefixLength) {
+                resumeGroup++;
+            }
+            for (int i = 0; i <= resumeGroup; i++) {
+                groups.add(previous.starts[i], previous.lookaheads[i]);
+            }
+        }
+
+        lex(groups, previous, suffixStart, shift);
+
+        return groups;
+    }
+
+    /**
+     * Lex the content from the start of the last known group until the end or until the groups are the same as the
+     * groups of the previous version of the content.
+     *
+     * @param groups the groups found so far
+     * @param previous the groups of a previous version of the content, {@code null} if there is none
+     * @param suffixStart the index from which on the content is the same as the end of the previous version
+     * @param shift the difference of the length of the content and of the previous version
+     */
+    private void lex(BlockGroups groups, BlockGroups previous, int suffixStart, int shift)
+    {
+        String content = groups.content;
+        int groupStart = groups.starts[groups.count - 1];
+        int minLookahead = groups.lookaheads[groups.count - 1];
+
+        // Lex the content like the parser does, the padding shifts the token indexes by one. The line break that
+        // starts a block thus ends the previous group and the index of the block token is the start of the group.
+        LookaheadTrackingCharStream input =
+            new LookaheadTrackingCharStream((LINE_BREAK + content + LINE_BREAK).toCharArray());
+        input.seek(groupStart);
+        DokuWikiGrammarLexer lexer = this.grammarCache.createLexer(input);
+
+        int candidate = -1;
+        int previousType = Token.INVALID_TYPE;
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            int type = token.getType();
+
+            // The end of a formatting that isn't open is sent as text before the paragraph is started, i.e., it
+            // still belongs to the previous block.
+            if (candidate >= 0 && !isUnmatchedEnd(type, previousType)) {
+                groups.add(candidate, Math.max(minLookahead, input.maxIndex));
+                groupStart = candidate;
+
+                // From the line break that starts the group on, the content and thus the tokens are unmodified.
+                if (candidate - 1 >= suffixStart && reusePreviousGroups(groups, previous, shift)) {
+                    return;
+                }
+            }
+            candidate = -1;
+
+            // A line break that is directly followed by the start of a block is an empty line.
+            int start = token.getStartIndex();
+            if (DokuWikiTokenParser.isBlockStart(type)
+                && (previousType == DokuWikiGrammarLexer.NEWLINE || type == DokuWikiGrammarLexer.HEADING)
+                && start > groupStart && start < content.length()) {
+                candidate = start;
+            }
+
+            previousType = type;
+        }
+    }
+
+    private boolean reusePreviousGroups(BlockGroups groups, BlockGroups previous, int shift)
+    {
+        int lastStart = groups.starts[groups.count - 1];
+        int index = Arrays.binarySearch(previous.starts, 0, previous.count, lastStart - shift);
+        if (index <= 0) {
+            return false;
+        }
+
+        int minLookahead = groups.lookaheads[groups.count - 1];
+        for (int i = index + 1; i < previous.count; i++) {
+            groups.add(previous.starts[i] + shift, Math.max(minLookahead, previous.lookaheads[i] + shift));
+        }
+
+        return true;
+    }
+
+    private static boolean isUnmatchedEnd(int type, int previousType)
+    {
+        return previousType == DokuWikiGrammarLexer.NEWLINE && (type == DokuWikiGrammarLexer.DEL_END
+            || type == DokuWikiGrammarLexer.SUB_END || type == DokuWikiGrammarLexer.SUP_END);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import javax.inject.Singleton;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Holds the DFA and prediction context caches that ANTLR fills while lexing and parsing DokuWiki documents.
+ * <p>
+ * The generated lexer and parser store these caches in static fields that can neither be inspected nor cleared. This
+ * component creates lexers and parsers that use its own caches instead, which allows long-running servers to keep the
+ * memory used by the caches under control.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@Component(roles = DokuWikiGrammarCache.class)
+@Singleton
+public class DokuWikiGrammarCache
+{
+    private static final class Caches
+    {
+        private final DFA[] lexerDFA = createDFA(DokuWikiGrammarLexer._ATN);
+
+        private final PredictionContextCache lexerContextCache = new PredictionContextCache();
+
+        private final DFA[] parserDFA = createDFA(DokuWikiGrammarParser._ATN);
+
+        private final PredictionContextCache parserContextCache = new PredictionContextCache();
+
+        private static DFA[] createDFA(ATN atn)
+        {
+            DFA[] result = new DFA[atn.getNumberOfDecisions()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new DFA(atn.getDecisionState(i), i);
+            }
+            return result;
+        }
+    }
+
+    private volatile Caches caches = new Caches();
+
+    /**
+     * @param input the input to lex
+     * @return a new lexer that uses the caches of this component
+     */
+    public DokuWikiGrammarLexer createLexer(CharStream input)
+    {
+        Caches current = this.caches;
+        DokuWikiGrammarLexer lexer = new DokuWikiGrammarLexer(input);
+        lexer.setInterpreter(
+            new LexerATNSimulator(lexer, lexer.getATN(), current.lexerDFA, current.lexerContextCache));
+        return lexer;
+    }
+
+    /**
+     * @param input the tokens to parse
+     * @return a new parser that uses the caches of this component
+     */
+    public DokuWikiGrammarParser createParser(TokenStream input)
+    {
+        Caches current = this.caches;
+        DokuWikiGrammarParser parser = new DokuWikiGrammarParser(input);
+        parser.setInterpreter(
+            new ParserATNSimulator(parser, parser.getATN(), current.parserDFA, current.parserContextCache));
+        return parser;
+    }
+
+    /**
+     * @return the number of states in the DFA of the lexer and of the parser
+     */
+    public int getDFAStateCount()
+    {
+        Caches current = this.caches;
+        return countStates(current.lexerDFA) + countStates(current.parserDFA);
+    }
+
+    /**
+     * @return the number of entries in the prediction context caches of the lexer and of the parser
+     */
+    public int getPredictionContextCacheSize()
+    {
+        Caches current = this.caches;
+        return current.lexerContextCache.size() + current.parserContextCache.size();
+    }
+
+    /**
+     * Discard all cached DFA states and prediction contexts. Lexers and parsers that are currently in use continue
+     * using the old caches, all new lexers and parsers start with empty caches.
+     */
+    public void clear()
+    {
+        this.caches = new Caches();
+    }
+
+    private static int countStates(DFA[] dfas)
+    {
+        int result = 0;
+        for (DFA dfa : dfas) {
+            result += dfa.states.size();
+        }
+        return result;
+    }
+}
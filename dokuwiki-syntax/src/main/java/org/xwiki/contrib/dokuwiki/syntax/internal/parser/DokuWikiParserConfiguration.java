@@ -0,0 +1,272 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * Runtime configuration of the DokuWiki parser. The defaults are suitable for most uses. They can be changed with the
+ * {@code dokuwiki.parser.*} properties of the XWiki configuration, the setters allow tuning the parser, e.g., before
+ * a large import.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+@Component(roles = DokuWikiParserConfiguration.class)
+@Singleton
+public class DokuWikiParserConfiguration implements Initializable
+{
+    /**
+     * The default size of the window (in characters) that is kept in memory when streaming the input.
+     */
+    public static final int DEFAULT_STREAMING_WINDOW_SIZE = 4096;
+
+    /**
+     * The default size (in characters) of the chunks that are parsed in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_CHUNK_SIZE = 1024 * 1024;
+
+    private static final String PREFIX = "dokuwiki.parser.";
+
+    /**
+     * Falls back on an empty configuration when there's no default configuration source, e.g., outside of XWiki.
+     */
+    @Inject
+    private Provider<ConfigurationSource> configurationSourceProvider;
+
+    private volatile boolean streamingInput;
+
+    private volatile int streamingWindowSize = DEFAULT_STREAMING_WINDOW_SIZE;
+
+    private volatile boolean twoStagePrediction = true;
+
+    private volatile boolean singlePass;
+
+    private volatile boolean warmUp;
+
+    private volatile Path warmUpCorpus;
+
+    private volatile int maxDFAStates;
+
+    private volatile int parallelThreshold;
+
+    private volatile int parallelChunkSize = DEFAULT_PARALLEL_CHUNK_SIZE;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        ConfigurationSource configurationSource = this.configurationSourceProvider.get();
+        this.warmUp = configurationSource.getProperty(PREFIX + "warmUp", this.warmUp);
+        String corpus = configurationSource.getProperty(PREFIX + "warmUpCorpus", String.class);
+        if (StringUtils.isNotBlank(corpus)) {
+            this.warmUpCorpus = Paths.get(corpus);
+        }
+        this.maxDFAStates = configurationSource.getProperty(PREFIX + "maxDFAStates", this.maxDFAStates);
+        this.singlePass = configurationSource.getProperty(PREFIX + "singlePass", this.singlePass);
+        this.parallelThreshold = configurationSource.getProperty(PREFIX + "parallelThreshold", this.parallelThreshold);
+        this.streamingInput = configurationSource.getProperty(PREFIX + "streamingInput", this.streamingInput);
+        try {
+            setStreamingWindowSize(
+                configurationSource.getProperty(PREFIX + "streamingWindowSize", this.streamingWindowSize));
+            setParallelChunkSize(configurationSource.getProperty(PREFIX + "parallelChunkSize", this.parallelChunkSize));
+        } catch (IllegalArgumentException e) {
+            throw new InitializationException("Invalid DokuWiki parser configuration", e);
+        }
+    }
+
+    /**
+     * @return {@code true} if the lexer should read directly from the input reader instead of first loading the
+     *     whole input into memory, {@code false} by default. Streaming avoids holding a copy of the input but each
+     *     token then holds a copy of its text, so it only saves memory for very large documents. Configured with
+     *     the {@code dokuwiki.parser.streamingInput} configuration property.
+     */
+    public boolean isStreamingInput()
+    {
+        return this.streamingInput;
+    }
+
+    /**
+     * @param streamingInput see {@link #isStreamingInput()}
+     */
+    public void setStreamingInput(boolean streamingInput)
+    {
+        this.streamingInput = streamingInput;
+    }
+
+    /**
+     * @return the initial size of the window (in characters) that is kept in memory when streaming the input, the
+     *     window only grows beyond that to hold the current token. Configured with the
+     *     {@code dokuwiki.parser.streamingWindowSize} configuration property.
+     */
+    public int getStreamingWindowSize()
+    {
+        return this.streamingWindowSize;
+    }
+
+    /**
+     * @param streamingWindowSize see {@link #getStreamingWindowSize()}
+     */
+    public void setStreamingWindowSize(int streamingWindowSize)
+    {
+        if (streamingWindowSize < 1) {
+            throw new IllegalArgumentException("The streaming window size must be positive");
+        }
+        this.streamingWindowSize = streamingWindowSize;
+    }
+
+    /**
+     * @return {@code true} if documents should first be parsed with the faster SLL prediction mode and only be parsed
+     *     again with the full LL prediction mode when SLL fails, {@code false} to always use full LL prediction
+     */
+    public boolean isTwoStagePrediction()
+    {
+        return this.twoStagePrediction;
+    }
+
+    /**
+     * @param twoStagePrediction see {@link #isTwoStagePrediction()}
+     */
+    public void setTwoStagePrediction(boolean twoStagePrediction)
+    {
+        this.twoStagePrediction = twoStagePrediction;
+    }
+
+    /**
+     * @return {@code true} if the events should be generated directly from the tokens of the lexer in a single pass
+     *     without building a parse tree, {@code false} to build a parse tree and then walk it. Configured with the
+     *     {@code dokuwiki.parser.singlePass} configuration property.
+     */
+    public boolean isSinglePass()
+    {
+        return this.singlePass;
+    }
+
+    /**
+     * @param singlePass see {@link #isSinglePass()}
+     */
+    public void setSinglePass(boolean singlePass)
+    {
+        this.singlePass = singlePass;
+    }
+
+    /**
+     * @return {@code true} if the lexer and parser caches should be filled by parsing a small corpus when the parser
+     *     is initialized, {@code false} by default. This speeds up the first parses but delays the initialization of
+     *     the parser by a few hundred milliseconds, so it needs to be enabled before the parser is initialized, e.g.,
+     *     with the {@code dokuwiki.parser.warmUp} configuration property.
+     */
+    public boolean isWarmUp()
+    {
+        return this.warmUp;
+    }
+
+    /**
+     * @param warmUp see {@link #isWarmUp()}
+     */
+    public void setWarmUp(boolean warmUp)
+    {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * @return a file or a directory of {@code .txt} files with DokuWiki content that is parsed during the warm-up in
+     *     addition to the bundled corpus, {@code null} to only use the bundled corpus. Configured with the
+     *     {@code dokuwiki.parser.warmUpCorpus} configuration property.
+     */
+    public Path getWarmUpCorpus()
+    {
+        return this.warmUpCorpus;
+    }
+
+    /**
+     * @param warmUpCorpus see {@link #getWarmUpCorpus()}
+     */
+    public void setWarmUpCorpus(Path warmUpCorpus)
+    {
+        this.warmUpCorpus = warmUpCorpus;
+    }
+
+    /**
+     * @return the maximum number of DFA states that the lexer and parser caches may contain before they are cleared,
+     *     0 for no limit. Configured with the {@code dokuwiki.parser.maxDFAStates} configuration property.
+     */
+    public int getMaxDFAStates()
+    {
+        return this.maxDFAStates;
+    }
+
+    /**
+     * @param maxDFAStates see {@link #getMaxDFAStates()}
+     */
+    public void setMaxDFAStates(int maxDFAStates)
+    {
+        this.maxDFAStates = maxDFAStates;
+    }
+
+    /**
+     * @return the minimum size (in characters) of documents that are split into chunks that are lexed and parsed in
+     *     parallel, 0 to never parse in parallel. When enabled, the whole input is loaded into memory and the
+     *     single-pass parser is only used for documents below the threshold. Configured with the
+     *     {@code dokuwiki.parser.parallelThreshold} configuration property.
+     */
+    public int getParallelThreshold()
+    {
+        return this.parallelThreshold;
+    }
+
+    /**
+     * @param parallelThreshold see {@link #getParallelThreshold()}
+     */
+    public void setParallelThreshold(int parallelThreshold)
+    {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the approximate size (in characters) of the chunks that are parsed in parallel, configured with the
+     *     {@code dokuwiki.parser.parallelChunkSize} configuration property
+     */
+    public int getParallelChunkSize()
+    {
+        return this.parallelChunkSize;
+    }
+
+    /**
+     * @param parallelChunkSize see {@link #getParallelChunkSize()}
+     */
+    public void setParallelChunkSize(int parallelChunkSize)
+    {
+        if (parallelChunkSize < 1) {
+            throw new IllegalArgumentException("The parallel chunk size must be positive");
+        }
+        this.parallelChunkSize = parallelChunkSize;
+    }
+}
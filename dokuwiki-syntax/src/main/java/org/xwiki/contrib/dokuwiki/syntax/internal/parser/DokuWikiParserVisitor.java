@@ -19,10 +19,9 @@
  */
 package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,11 +44,7 @@ import org.xwiki.rendering.listener.HeaderLevel;
 import org.xwiki.rendering.listener.ListType;
 import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
-import org.xwiki.rendering.listener.WrappingListener;
-import org.xwiki.rendering.listener.chaining.ChainingListener;
 import org.xwiki.rendering.listener.chaining.EventType;
-import org.xwiki.rendering.listener.chaining.ListenerChain;
-import org.xwiki.rendering.listener.chaining.LookaheadChainingListener;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceType;
 import org.xwiki.rendering.util.IdGenerator;
@@ -68,53 +63,33 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
 
     private static final Pattern HEADING_MARKER_PATTERN = Pattern.compile("^=+");
 
-    private static final String LINE_BREAK = "\n";
-
     private static final String ALIGN_PARAMETER = "align";
 
-    private static final String CLOSING_ANGLE = ">";
+    private static final char CLOSING_ANGLE = '>';
+
+    private static final char LINE_BREAK_CHAR = '\n';
 
     private static final String LANGUAGE_PARAMETER = "language";
 
-    /**
-     * Helper class for wrapping a non-chaining listener as chaining listener to be used at the end of a listener chain.
-     */
-    private static class ChainingWrappingListener extends WrappingListener implements ChainingListener
-    {
-        protected ChainingWrappingListener(Listener listener)
-        {
-            setWrappedListener(listener);
-        }
+    private static final String CODE_CLOSING_TAG = "</code>";
 
-        @Override
-        public ListenerChain getListenerChain()
-        {
-            return null;
-        }
-    }
+    private static final String FILE_CLOSING_TAG = "</file>";
 
-    private static class ListState
-    {
-        private final int depth;
+    private static final int CODE_TAG_NAME_END = "<code".length();
 
-        private final ListType type;
+    private static final int FILE_TAG_NAME_END = "<file".length();
 
-        ListState(int depth, ListType type)
-        {
-            this.depth = depth;
-            this.type = type;
-        }
+    private static final String PREFORMATTED_PREFIX = "\n  ";
 
-        int getDepth()
-        {
-            return this.depth;
-        }
+    private static final Map<String, String> CENTER_ALIGN_PARAMETERS =
+        Collections.singletonMap(ALIGN_PARAMETER, "center");
 
-        ListType getType()
-        {
-            return this.type;
-        }
-    }
+    private static final Map<String, String> RIGHT_ALIGN_PARAMETERS =
+        Collections.singletonMap(ALIGN_PARAMETER, "right");
+
+    private static final Map<String, String> PHP_PARAMETERS = Collections.singletonMap(LANGUAGE_PARAMETER, "php");
+
+    private static final int INITIAL_LIST_CAPACITY = 8;
 
     private enum BlockState
     {
@@ -125,7 +100,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
         QUOTE
     }
 
-    private LookaheadChainingListener listener;
+    private LastEventListener listener;
 
     private MetaData metaData;
 
@@ -143,7 +118,17 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
 
     private final IdGenerator idGenerator = new IdGenerator();
 
-    private final Deque<Format> formattingStack = new ArrayDeque<>();
+    /**
+     * The open formats, from the outermost to the innermost. Each format can be open only once.
+     */
+    private final Format[] formattingStack = new Format[Format.values().length];
+
+    private int formattingDepth;
+
+    /**
+     * The open formats as bits indexed by the ordinal of the format.
+     */
+    private int openFormats;
 
     private int quoteDepth;
 
@@ -151,19 +136,24 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
 
     private BlockState blockState = BlockState.NONE;
 
-    private final Deque<ListState> listStack = new ArrayDeque<>();
+    /**
+     * The indentation depth of the open lists, from the outermost to the innermost.
+     */
+    private int[] listDepths = new int[INITIAL_LIST_CAPACITY];
+
+    private ListType[] listTypes = new ListType[INITIAL_LIST_CAPACITY];
+
+    private int listCount;
+
+    private final List<CharSequence> pendingPreformattedLines = new ArrayList<>();
 
     /**
      * @param listener the listener to generate events on
      */
     public void setListener(Listener listener)
     {
-        // Wrap the listener in a LookaheadChainingListener so that we can look ahead in the stream to detect the
-        // last event that was sent. This is needed to detect when to create a space.
-        ListenerChain chain = new ListenerChain();
-        this.listener = new LookaheadChainingListener(chain, 1);
-        chain.addListener(this.listener);
-        chain.addListener(new ChainingWrappingListener(listener));
+        // Wrap the listener to detect the last event that was sent. This is needed to detect when to create a space.
+        this.listener = new LastEventListener(listener);
     }
 
     /**
@@ -177,8 +167,66 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitDocument(DokuWikiGrammarParser.DocumentContext ctx)
     {
-        this.listener.beginDocument(this.metaData);
+        beginDocument();
         super.visitDocument(ctx);
+        endDocument();
+        return null;
+    }
+
+    void beginDocument()
+    {
+        this.listener.beginDocument(this.metaData);
+    }
+
+    /**
+     * Visit the blocks of a part of a document that has been parsed separately from the rest of the document. The
+     * parts need to be visited in order between {@link #beginDocument()} and {@link #endDocument()}. Tables and
+     * preformatted blocks that have been split between two parts are joined again.
+     *
+     * @param part the parse tree of the part
+     */
+    void visitDocumentPart(DokuWikiGrammarParser.DocumentContext part)
+    {
+        for (ParseTree child : part.children) {
+            if (child instanceof DokuWikiGrammarParser.TableContext) {
+                flushPreformatted();
+                // Continue the table of the previous part if there was no other block in between.
+                if (this.blockState != BlockState.TABLE) {
+                    beginTable();
+                }
+                ((DokuWikiGrammarParser.TableContext) child).tableRow().forEach(this::visitTableRow);
+            } else if (child instanceof DokuWikiGrammarParser.PreformattedContext) {
+                flushTable();
+                ((DokuWikiGrammarParser.PreformattedContext) child).PREFORMATTED().stream()
+                    .map(node -> TokenText.of(node.getSymbol()))
+                    .forEach(this.pendingPreformattedLines::add);
+            } else if (!(child instanceof TerminalNode)) {
+                flushTable();
+                flushPreformatted();
+                child.accept(this);
+            }
+        }
+    }
+
+    private void flushTable()
+    {
+        if (this.blockState == BlockState.TABLE) {
+            endTable();
+        }
+    }
+
+    private void flushPreformatted()
+    {
+        if (!this.pendingPreformattedLines.isEmpty()) {
+            onPreformatted(new ArrayList<>(this.pendingPreformattedLines));
+            this.pendingPreformattedLines.clear();
+        }
+    }
+
+    void endDocument()
+    {
+        flushTable();
+        flushPreformatted();
         closeCurrentBlock();
 
         while (this.sectionLevel > 0) {
@@ -187,82 +235,113 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
         }
 
         this.listener.endDocument(this.metaData);
-        return null;
     }
 
     @Override
     public Object visitCode(DokuWikiGrammarParser.CodeContext ctx)
     {
-        String text = ctx.getText();
+        onCode(TokenText.of(ctx), ctx.CODE() == null);
+        return null;
+    }
 
-        String tagName = ctx.CODE() != null ? CODE_MACRO : "file";
+    void onCode(CharSequence text, boolean isFile)
+    {
+        // The opening tag is "<code" or "<file", optionally followed by parameters.
+        int tagNameEnd = isFile ? FILE_TAG_NAME_END : CODE_TAG_NAME_END;
+        int openingTagEnd = StringUtils.indexOf(text, CLOSING_ANGLE);
 
         // Strip <code [^>]*> and </code> tags
-        String content = StringUtils.removeEnd(StringUtils.substringAfter(text, CLOSING_ANGLE),
-            "</" + tagName + CLOSING_ANGLE);
+        int contentStart = openingTagEnd >= 0 ? openingTagEnd + 1 : text.length();
+        int contentEnd = text.length();
+        String closingTag = isFile ? FILE_CLOSING_TAG : CODE_CLOSING_TAG;
+        if (contentEnd - contentStart >= closingTag.length() && StringUtils.endsWith(text, closingTag)) {
+            contentEnd -= closingTag.length();
+        }
 
-        if (content.startsWith(LINE_BREAK)) {
-            content = content.substring(1);
+        if (contentStart < contentEnd && text.charAt(contentStart) == LINE_BREAK_CHAR) {
+            contentStart++;
         }
 
-        if (content.endsWith(LINE_BREAK)) {
-            content = content.substring(0, content.length() - 1);
+        if (contentStart < contentEnd && text.charAt(contentEnd - 1) == LINE_BREAK_CHAR) {
+            contentEnd--;
         }
 
         Map<String, String> parametersMap = new HashMap<>();
-        String parameterString = StringUtils.trim(StringUtils.substringBetween(text, "<" + tagName, CLOSING_ANGLE));
 
-        String[] parameters = StringUtils.split(parameterString);
-
-        if (parameters != null && parameters.length > 0) {
-            String language = parameters[0];
+        // The language is the first word of the parameters.
+        if (openingTagEnd >= tagNameEnd) {
+            int languageStart = tagNameEnd;
+            while (languageStart < openingTagEnd && text.charAt(languageStart) <= ' ') {
+                languageStart++;
+            }
+            int languageEnd = languageStart;
+            while (languageEnd < openingTagEnd && !Character.isWhitespace(text.charAt(languageEnd))) {
+                languageEnd++;
+            }
 
-            if (!language.equals("-") && !language.startsWith("[")) {
-                parametersMap.put(LANGUAGE_PARAMETER, language);
+            if (languageEnd > languageStart && text.charAt(languageStart) != '['
+                && !(languageEnd == languageStart + 1 && text.charAt(languageStart) == '-'))
+            {
+                parametersMap.put(LANGUAGE_PARAMETER, text.subSequence(languageStart, languageEnd).toString());
             }
         }
 
         ensureBlockAcceptable();
-        this.listener.onMacro(CODE_MACRO, parametersMap, content, false);
-        return null;
+        this.listener.onMacro(CODE_MACRO, parametersMap, text.subSequence(contentStart, contentEnd).toString(),
+            false);
     }
 
     @Override
     public Object visitLink(DokuWikiGrammarParser.LinkContext ctx)
     {
-        ensureInline();
-        String text = ctx.getText();
-        this.linkSyntaxParser.parse(text.substring(2, text.length() - 2), this.listener);
+        onLink(TokenText.of(ctx));
         return null;
     }
 
+    void onLink(CharSequence text)
+    {
+        ensureInline();
+        this.linkSyntaxParser.parse(text.subSequence(2, text.length() - 2), this.listener);
+    }
+
     @Override
     public Object visitFreeStandingUrl(DokuWikiGrammarParser.FreeStandingUrlContext ctx)
+    {
+        onFreeStandingUrl(TokenText.of(ctx), ctx.FREESTANDING_WWW() != null);
+        return null;
+    }
+
+    void onFreeStandingUrl(CharSequence url, boolean withoutProtocol)
     {
         ensureInline();
-        String text = ctx.getText();
+        String text;
 
         // If the URL is not prefixed with a protocol, assume it's http as that's what DokuWiki does. XWiki doesn't
         // support freestanding URLs without protocol.
-        if (ctx.FREESTANDING_WWW() != null) {
-            text = "http://" + text;
+        if (withoutProtocol) {
+            text = "http://" + url;
+        } else {
+            text = url.toString();
         }
         ResourceReference reference = new ResourceReference(text, ResourceType.URL);
         reference.setTyped(false);
         this.listener.beginLink(reference, true, Listener.EMPTY_PARAMETERS);
         this.listener.endLink(reference, true, Listener.EMPTY_PARAMETERS);
-        return null;
     }
 
     @Override
     public Object visitMedia(DokuWikiGrammarParser.MediaContext ctx)
     {
-        ensureInline();
-        String text = ctx.getText();
-        this.imageSyntaxParser.parse(text.substring(2, text.length() - 2), this.listener);
+        onMedia(TokenText.of(ctx));
         return null;
     }
 
+    void onMedia(CharSequence text)
+    {
+        ensureInline();
+        this.imageSyntaxParser.parse(text.subSequence(2, text.length() - 2), this.listener);
+    }
+
     @Override
     public Object visitBold(DokuWikiGrammarParser.BoldContext ctx)
     {
@@ -298,7 +377,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitDelStart(DokuWikiGrammarParser.DelStartContext ctx)
     {
-        maybeBeginFormat(Format.STRIKEDOUT, ctx.getText());
+        maybeBeginFormat(Format.STRIKEDOUT, TokenText.of(ctx));
 
         return null;
     }
@@ -306,7 +385,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitDelEnd(DokuWikiGrammarParser.DelEndContext ctx)
     {
-        maybeEndFormat(Format.STRIKEDOUT, ctx.getText());
+        maybeEndFormat(Format.STRIKEDOUT, TokenText.of(ctx));
 
         return null;
     }
@@ -314,7 +393,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitSubStart(DokuWikiGrammarParser.SubStartContext ctx)
     {
-        maybeBeginFormat(Format.SUBSCRIPT, ctx.getText());
+        maybeBeginFormat(Format.SUBSCRIPT, TokenText.of(ctx));
 
         return null;
     }
@@ -322,7 +401,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitSubEnd(DokuWikiGrammarParser.SubEndContext ctx)
     {
-        maybeEndFormat(Format.SUBSCRIPT, ctx.getText());
+        maybeEndFormat(Format.SUBSCRIPT, TokenText.of(ctx));
 
         return null;
     }
@@ -330,7 +409,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitSupStart(DokuWikiGrammarParser.SupStartContext ctx)
     {
-        maybeBeginFormat(Format.SUPERSCRIPT, ctx.getText());
+        maybeBeginFormat(Format.SUPERSCRIPT, TokenText.of(ctx));
 
         return null;
     }
@@ -338,34 +417,34 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitSupEnd(DokuWikiGrammarParser.SupEndContext ctx)
     {
-        maybeEndFormat(Format.SUPERSCRIPT, ctx.getText());
+        maybeEndFormat(Format.SUPERSCRIPT, TokenText.of(ctx));
 
         return null;
     }
 
-    private void maybeBeginFormat(Format format, String alternativeText)
+    void maybeBeginFormat(Format format, CharSequence alternativeText)
     {
-        if (!this.formattingStack.contains(format)) {
+        if (!isFormatOpen(format)) {
             beginFormat(format);
         } else {
             this.plainParser.parse(alternativeText, this.listener);
         }
     }
 
-    private void maybeEndFormat(Format format, String alternativeText)
+    void maybeEndFormat(Format format, CharSequence alternativeText)
     {
-        if (this.formattingStack.contains(format)) {
+        if (isFormatOpen(format)) {
             endFormat(format);
         } else {
             this.plainParser.parse(alternativeText, this.listener);
         }
     }
 
-    private void toggleFormat(Format format)
+    void toggleFormat(Format format)
     {
         ensureInline();
 
-        if (this.formattingStack.contains(format)) {
+        if (isFormatOpen(format)) {
             endFormat(format);
         } else {
             beginFormat(format);
@@ -377,34 +456,44 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
         ensureInline();
 
         this.listener.beginFormat(format, Listener.EMPTY_PARAMETERS);
-        this.formattingStack.push(format);
+        this.formattingStack[this.formattingDepth++] = format;
+        this.openFormats |= 1 << format.ordinal();
     }
 
     private void endFormat(Format format)
     {
-        Deque<Format> tempStack = new ArrayDeque<>();
-        while (!this.formattingStack.isEmpty() && !this.formattingStack.peek().equals(format)) {
-            tempStack.push(this.formattingStack.pop());
+        int index = this.formattingDepth - 1;
+        while (this.formattingStack[index] != format) {
+            index--;
         }
 
         this.listener.endFormat(format, Listener.EMPTY_PARAMETERS);
-        this.formattingStack.pop();
-        while (!tempStack.isEmpty()) {
-            beginFormat(tempStack.pop());
+        this.openFormats &= ~(1 << format.ordinal());
+
+        // Formats that were opened inside the closed format are opened again and move down in the stack.
+        for (int i = index + 1; i < this.formattingDepth; i++) {
+            this.listener.beginFormat(this.formattingStack[i], Listener.EMPTY_PARAMETERS);
+            this.formattingStack[i - 1] = this.formattingStack[i];
         }
+        this.formattingStack[--this.formattingDepth] = null;
+    }
+
+    private boolean isFormatOpen(Format format)
+    {
+        return (this.openFormats & (1 << format.ordinal())) != 0;
     }
 
     @Override
     public Object visitHtml(DokuWikiGrammarParser.HtmlContext ctx)
     {
-        // Strip <html> and </html> tags
-        String content = StringUtils.removeEndIgnoreCase(
-            StringUtils.removeStartIgnoreCase(ctx.getText(), "<html>"),
-            "</html>");
-
-        TerminalNode inlineHTML = ctx.getToken(DokuWikiGrammarLexer.HTML, 0);
+        onHtml(TokenText.of(ctx), ctx.getToken(DokuWikiGrammarLexer.HTML, 0) != null);
+        return null;
+    }
 
-        boolean isInline = inlineHTML != null;
+    void onHtml(CharSequence text, boolean isInline)
+    {
+        // Strip <html> and </html> tags
+        String content = stripTags(text, "<html>", "</html>", true);
 
         if (isInline) {
             ensureInline();
@@ -412,19 +501,20 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
             ensureBlockAcceptable();
         }
 
-        this.listener.onMacro("html", Listener.EMPTY_PARAMETERS, content, inlineHTML != null);
-        return null;
+        this.listener.onMacro("html", Listener.EMPTY_PARAMETERS, content, isInline);
     }
 
     @Override
     public Object visitPhp(DokuWikiGrammarParser.PhpContext ctx)
     {
-        // Strip <php> and </php> tags
-        String content = StringUtils.removeEndIgnoreCase(
-            StringUtils.removeStartIgnoreCase(ctx.getText(), "<php>"),
-            "</php>");
+        onPhp(TokenText.of(ctx), ctx.getToken(DokuWikiGrammarLexer.PHP, 0) != null);
+        return null;
+    }
 
-        boolean isInline = ctx.getToken(DokuWikiGrammarLexer.PHP, 0) != null;
+    void onPhp(CharSequence text, boolean isInline)
+    {
+        // Strip <php> and </php> tags
+        String content = stripTags(text, "<php>", "</php>", true);
 
         if (isInline) {
             ensureInline();
@@ -432,37 +522,52 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
             ensureBlockAcceptable();
         }
 
-        this.listener.onMacro(CODE_MACRO, Collections.singletonMap(LANGUAGE_PARAMETER, "php"), content, isInline);
-        return null;
+        this.listener.onMacro(CODE_MACRO, PHP_PARAMETERS, content, isInline);
     }
 
     @Override
     public Object visitListItem(DokuWikiGrammarParser.ListItemContext ctx)
+    {
+        beginListItem(TokenText.of(ctx.LIST_INDENT().getSymbol()));
+
+        ctx.contentWithSyntax().accept(this);
+
+        closeFormatting();
+        return null;
+    }
+
+    void beginListItem(CharSequence listIndentText)
     {
         if (this.blockState != BlockState.LIST) {
             closeCurrentBlock();
         }
 
-        String listIndent = StringUtils.stripEnd(ctx.LIST_INDENT().getText().substring(1), " ");
+        // The list indent is a line break, the indentation, the list marker and optional spaces.
+        int markerIndex = listIndentText.length() - 1;
+        while (listIndentText.charAt(markerIndex) == ' ') {
+            markerIndex--;
+        }
 
-        ListType listType = listIndent.charAt(listIndent.length() - 1) == '*' ? ListType.BULLETED : ListType.NUMBERED;
+        ListType listType = listIndentText.charAt(markerIndex) == '*' ? ListType.BULLETED : ListType.NUMBERED;
 
-        String indentation = listIndent.substring(0, listIndent.length() - 1).replace("\t", "  ");
-        int listDepth = indentation.length() / 2;
+        // Tabs count as two spaces.
+        int indentation = 0;
+        for (int i = 1; i < markerIndex; i++) {
+            indentation += listIndentText.charAt(i) == '\t' ? 2 : 1;
+        }
+        int listDepth = indentation / 2;
 
-        if (this.listStack.isEmpty()) {
-            this.listener.beginList(listType, Listener.EMPTY_PARAMETERS);
-            this.listStack.push(new ListState(listDepth, listType));
+        if (this.listCount == 0) {
+            beginList(listDepth, listType);
         } else {
-            if (listDepth < this.listStack.getLast().getDepth()) {
-                listDepth = this.listStack.getLast().getDepth();
+            if (listDepth < this.listDepths[0]) {
+                listDepth = this.listDepths[0];
             }
 
-            if (listDepth > this.listStack.peek().getDepth()) {
-                this.listener.beginList(listType, Listener.EMPTY_PARAMETERS);
-                this.listStack.push(new ListState(listDepth, listType));
+            if (listDepth > this.listDepths[this.listCount - 1]) {
+                beginList(listDepth, listType);
             } else {
-                while (!this.listStack.isEmpty() && listDepth < this.listStack.peek().getDepth()) {
+                while (this.listCount > 0 && listDepth < this.listDepths[this.listCount - 1]) {
                     this.listener.endListItem();
                     closeList();
                 }
@@ -474,39 +579,57 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
 
         this.listener.beginListItem();
         this.blockState = BlockState.LIST;
-
-        ctx.contentWithSyntax().accept(this);
-
-        closeFormatting();
-        return null;
     }
 
     private void ensureListType(ListType listType, int listDepth)
     {
-        if (this.listStack.isEmpty() || listType != this.listStack.peek().getType()) {
+        if (this.listCount == 0 || listType != this.listTypes[this.listCount - 1]) {
             closeList();
-            this.listener.beginList(listType, Listener.EMPTY_PARAMETERS);
-            this.listStack.push(new ListState(listDepth, listType));
+            beginList(listDepth, listType);
+        }
+    }
+
+    private void beginList(int listDepth, ListType listType)
+    {
+        this.listener.beginList(listType, Listener.EMPTY_PARAMETERS);
+
+        if (this.listCount == this.listDepths.length) {
+            this.listDepths = Arrays.copyOf(this.listDepths, this.listCount * 2);
+            this.listTypes = Arrays.copyOf(this.listTypes, this.listCount * 2);
         }
+        this.listDepths[this.listCount] = listDepth;
+        this.listTypes[this.listCount] = listType;
+        this.listCount++;
     }
 
     private void closeList()
     {
-        if (!this.listStack.isEmpty()) {
-            this.listener.endList(this.listStack.pop().getType(), Listener.EMPTY_PARAMETERS);
+        if (this.listCount > 0) {
+            this.listCount--;
+            this.listener.endList(this.listTypes[this.listCount], Listener.EMPTY_PARAMETERS);
         }
     }
 
 
     @Override
     public Object visitQuote(DokuWikiGrammarParser.QuoteContext ctx)
+    {
+        beginQuoteLine(TokenText.of(ctx.QUOTE_START().getSymbol()));
+
+        ctx.contentWithSyntax().accept(this);
+        closeFormatting();
+
+        return null;
+    }
+
+    void beginQuoteLine(CharSequence quoteStartText)
     {
         if (this.blockState != BlockState.QUOTE) {
             closeCurrentBlock();
             this.blockState = BlockState.QUOTE;
         }
 
-        int newQuoteDepth = ctx.QUOTE_START().getText().trim().length();
+        int newQuoteDepth = StringUtils.countMatches(quoteStartText, '>');
 
         if (this.quoteDepth >= newQuoteDepth) {
             for (; this.quoteDepth > newQuoteDepth; this.quoteDepth--) {
@@ -521,43 +644,54 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
                 this.listener.beginQuotationLine();
             }
         }
+    }
 
+    @Override
+    public Object visitParagraph(DokuWikiGrammarParser.ParagraphContext ctx)
+    {
+        beginParagraphLine(TokenText.isBlank(ctx), startsWithBlock(ctx.contentWithSyntax()));
+
+        // Ignore the newline at the end of the paragraph
         ctx.contentWithSyntax().accept(this);
-        closeFormatting();
 
         return null;
     }
 
-    @Override
-    public Object visitParagraph(DokuWikiGrammarParser.ParagraphContext ctx)
+    /**
+     * @param isBlank if the line consists only of whitespace
+     * @param startsWithBlock if the line starts with a block element like code or block HTML
+     */
+    void beginParagraphLine(boolean isBlank, boolean startsWithBlock)
     {
         // Close the previous block when it isn't a paragraph. Close the previous paragraph if the paragraph consists
         // only of whitespace.
-        if (StringUtils.isBlank(ctx.getText()) || this.blockState != BlockState.PARAGRAPH) {
+        if (isBlank || this.blockState != BlockState.PARAGRAPH) {
             closeCurrentBlock();
         }
 
         // If the previous line was also a paragraph, insert a space so simple line breaks get converted to spaces.
         // However, don't do this if there is already a space or a newline syntax at the end of the previous line.
-        if (this.blockState == BlockState.PARAGRAPH && !startsWithBlock(ctx.contentWithSyntax())
-            && this.listener.getNextEvent().eventType != EventType.ON_SPACE
-            && this.listener.getNextEvent().eventType != EventType.ON_NEW_LINE) {
+        if (this.blockState == BlockState.PARAGRAPH && !startsWithBlock
+            && this.listener.getLastEvent() != EventType.ON_SPACE
+            && this.listener.getLastEvent() != EventType.ON_NEW_LINE) {
             this.listener.onSpace();
         }
+    }
 
-        // Ignore the newline at the end of the paragraph
-        ctx.contentWithSyntax().accept(this);
+    @Override
+    public Object visitRss(DokuWikiGrammarParser.RssContext ctx)
+    {
+        onRss(TokenText.of(ctx));
 
         return null;
     }
 
-    @Override
-    public Object visitRss(DokuWikiGrammarParser.RssContext ctx)
+    void onRss(CharSequence text)
     {
         ensureBlockAcceptable();
 
         Map<String, String> param = new HashMap<>();
-        String[] arguments = StringUtils.split(ctx.getText());
+        String[] arguments = StringUtils.split(text.toString());
         param.put("feed", arguments[0].substring(6));
 
         // Get the count - the first number we find
@@ -569,41 +703,59 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
             param.put("content", "true");
         }
         this.listener.onMacro("rss", param, null, false);
-
-        return null;
     }
 
     @Override
     public Object visitTable(DokuWikiGrammarParser.TableContext ctx)
+    {
+        beginTable();
+
+        ctx.tableRow().forEach(this::visitTableRow);
+
+        endTable();
+
+        return null;
+    }
+
+    void beginTable()
     {
         closeCurrentBlock();
         this.listener.beginTable(Listener.EMPTY_PARAMETERS);
         this.blockState = BlockState.TABLE;
+    }
 
-        ctx.tableRow().forEach(this::visitTableRow);
-
+    void endTable()
+    {
         this.listener.endTable(Listener.EMPTY_PARAMETERS);
         this.blockState = BlockState.NONE;
+    }
 
-        return null;
+    void beginTableRow()
+    {
+        this.listener.beginTableRow(Listener.EMPTY_PARAMETERS);
+    }
+
+    void endTableRow()
+    {
+        this.listener.endTableRow(Listener.EMPTY_PARAMETERS);
     }
 
     @Override
     public Object visitTableRow(DokuWikiGrammarParser.TableRowContext ctx)
     {
-        this.listener.beginTableRow(Listener.EMPTY_PARAMETERS);
+        beginTableRow();
 
         List<DokuWikiGrammarParser.TableCellContext> cells = ctx.tableCell();
 
         // Skip empty cells at the beginning of the row as these are also skipped by DokuWiki.
         int skipStart = 0;
-        while (skipStart < cells.size() && cells.get(skipStart).getText().length() == 1) {
+        while (skipStart < cells.size() && TokenText.length(cells.get(skipStart)) == 1) {
             skipStart++;
         }
         // Skip the last "cell" as it should only be the end marker of the table row.
         cells.stream().limit(cells.size() - 1L).skip(skipStart).forEach(this::visitTableCell);
 
-        this.listener.endTableRow(Listener.EMPTY_PARAMETERS);
+        endTableRow();
 
         return null;
     }
@@ -611,19 +763,37 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitTableCell(DokuWikiGrammarParser.TableCellContext ctx)
     {
-        boolean startPadding = ctx.tableCellStartPadding().getText().length() > 1;
-        boolean endPadding = ctx.tableCellEndPadding().getText().length() > 1;
+        boolean startPadding = TokenText.length(ctx.tableCellStartPadding()) > 1;
+        boolean endPadding = TokenText.length(ctx.tableCellEndPadding()) > 1;
         boolean isHeader = ctx.CARET() != null;
-        boolean isEmpty = ctx.tableCellContent().getText().isEmpty();
+        boolean isEmpty = TokenText.length(ctx.tableCellContent()) == 0;
+
+        Map<String, String> parameters = beginTableCell(isHeader, startPadding, endPadding, isEmpty);
+
+        ctx.tableCellContent().accept(this);
+
+        endTableCell(isHeader, parameters);
+
+        return null;
+    }
 
+    /**
+     * @param isHeader if the cell is a header cell
+     * @param startPadding if the content of the cell is preceded by at least two spaces
+     * @param endPadding if the content of the cell is followed by at least two spaces
+     * @param isEmpty if the cell has no content apart from the padding
+     * @return the parameters of the cell that need to be passed to {@link #endTableCell(boolean, Map)}
+     */
+    Map<String, String> beginTableCell(boolean isHeader, boolean startPadding, boolean endPadding, boolean isEmpty)
+    {
         Map<String, String> parameters;
 
         if (startPadding && endPadding) {
-            parameters = Collections.singletonMap(ALIGN_PARAMETER, "center");
+            parameters = CENTER_ALIGN_PARAMETERS;
         } else if (startPadding && !isEmpty) {
-            parameters = Collections.singletonMap(ALIGN_PARAMETER, "right");
+            parameters = RIGHT_ALIGN_PARAMETERS;
         } else {
-            parameters = Collections.emptyMap();
+            parameters = Listener.EMPTY_PARAMETERS;
         }
 
         if (isHeader) {
@@ -632,8 +802,11 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
             this.listener.beginTableCell(parameters);
         }
 
-        ctx.tableCellContent().accept(this);
+        return parameters;
+    }
 
+    void endTableCell(boolean isHeader, Map<String, String> parameters)
+    {
         closeFormatting();
 
         if (isHeader) {
@@ -641,16 +814,19 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
         } else {
             this.listener.endTableCell(parameters);
         }
-
-        return null;
     }
 
     @Override
     public Object visitHorizontalRule(DokuWikiGrammarParser.HorizontalRuleContext ctx)
+    {
+        onHorizontalRule();
+        return null;
+    }
+
+    void onHorizontalRule()
     {
         ensureBlockAcceptable();
         this.listener.onHorizontalLine(Listener.EMPTY_PARAMETERS);
-        return null;
     }
 
     private boolean startsWithBlock(DokuWikiGrammarParser.ContentWithSyntaxContext ctx)
@@ -669,11 +845,17 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
 
     @Override
     public Object visitHeading(DokuWikiGrammarParser.HeadingContext ctx)
+    {
+        onHeading(TokenText.of(ctx));
+        return null;
+    }
+
+    void onHeading(CharSequence text)
     {
         // Headings are always top-level elements in DokuWiki
         closeCurrentBlock();
 
-        String heading = ctx.getText().trim();
+        String heading = text.toString().trim();
 
         // Strip the heading delimiter
         Matcher headingMarkerMatcher = HEADING_MARKER_PATTERN.matcher(heading);
@@ -707,51 +889,97 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
             this.plainParser.parse(heading, this.listener);
             this.listener.endHeader(headerLevel, id, Listener.EMPTY_PARAMETERS);
         }
-        return null;
     }
 
     @Override
     public Object visitPreformatted(DokuWikiGrammarParser.PreformattedContext ctx)
+    {
+        onPreformatted(ctx.PREFORMATTED().stream()
+            .map(node -> TokenText.of(node.getSymbol()))
+            .collect(Collectors.toList()));
+
+        return null;
+    }
+
+    /**
+     * @param lines the consecutive preformatted lines, each of them including the leading line break and indentation
+     */
+    void onPreformatted(List<CharSequence> lines)
     {
         closeCurrentBlock();
 
         // Ignore empty preformatted blocks, just make sure that they start a new block/paragraph.
-        if (StringUtils.isNotBlank(ctx.getText())) {
-            String content = ctx.PREFORMATTED().stream()
-                .map(ParseTree::getText)
-                .map(line -> StringUtils.removeStart(line, "\n  "))
-                .collect(Collectors.joining(LINE_BREAK));
-            this.listener.onMacro(CODE_MACRO, Listener.EMPTY_PARAMETERS, content, false);
+        if (lines.stream().anyMatch(StringUtils::isNotBlank)) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                CharSequence line = lines.get(i);
+                if (i > 0) {
+                    content.append(LINE_BREAK_CHAR);
+                }
+                int start = StringUtils.startsWith(line, PREFORMATTED_PREFIX) ? PREFORMATTED_PREFIX.length() : 0;
+                content.append(line, start, line.length());
+            }
+            this.listener.onMacro(CODE_MACRO, Listener.EMPTY_PARAMETERS, content.toString(), false);
         }
-
-        return null;
     }
 
     @Override
     public Object visitUnformatted(DokuWikiGrammarParser.UnformattedContext ctx)
+    {
+        onUnformatted(TokenText.of(ctx), ctx.NOWIKI() != null);
+        return null;
+    }
+
+    void onUnformatted(CharSequence text, boolean isNoWikiTag)
     {
         String content;
-        if (ctx.NOWIKI() != null) {
+        if (isNoWikiTag) {
             // Strip <nowiki> and </nowiki> tags
-            content = StringUtils.removeEnd(StringUtils.removeStart(ctx.getText(), "<nowiki>"), "</nowiki>");
+            content = stripTags(text, "<nowiki>", "</nowiki>", false);
         } else {
             // Strip '%%' tags
-            content = ctx.getText().substring(2, ctx.getText().length() - 2);
+            content = text.subSequence(2, text.length() - 2).toString();
         }
 
         this.listener.onVerbatim(content, this.blockState != BlockState.NONE, Listener.EMPTY_PARAMETERS);
-        return null;
     }
 
     @Override
     public Object visitFootnote(DokuWikiGrammarParser.FootnoteContext ctx)
+    {
+        onFootnote(TokenText.of(ctx));
+
+        return null;
+    }
+
+    void onFootnote(CharSequence text)
     {
         ensureInline();
 
-        String footnote = ctx.getText().substring(2, ctx.getText().length() - 2);
+        String footnote = text.subSequence(2, text.length() - 2).toString();
         this.listener.onMacro("footnote", Listener.EMPTY_PARAMETERS, footnote, true);
+    }
 
-        return null;
+    /**
+     * Remove the given start and end tags from the given text if present.
+     *
+     * @return the text between the tags
+     */
+    private static String stripTags(CharSequence text, String startTag, String endTag, boolean ignoreCase)
+    {
+        int start = 0;
+        if (ignoreCase ? StringUtils.startsWithIgnoreCase(text, startTag) : StringUtils.startsWith(text, startTag)) {
+            start = startTag.length();
+        }
+
+        int end = text.length();
+        if (end - start >= endTag.length()
+            && (ignoreCase ? StringUtils.endsWithIgnoreCase(text, endTag) : StringUtils.endsWith(text, endTag)))
+        {
+            end -= endTag.length();
+        }
+
+        return text.subSequence(start, end).toString();
     }
 
     private void ensureBlockAcceptable()
@@ -773,7 +1001,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
                 }
                 break;
             case LIST:
-                while (!this.listStack.isEmpty()) {
+                while (this.listCount > 0) {
                     this.listener.endListItem();
                     closeList();
                 }
@@ -787,11 +1015,14 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
         this.blockState = BlockState.NONE;
     }
 
-    private void closeFormatting()
+    void closeFormatting()
     {
-        while (!this.formattingStack.isEmpty()) {
-            this.listener.endFormat(this.formattingStack.pop(), Listener.EMPTY_PARAMETERS);
+        while (this.formattingDepth > 0) {
+            Format format = this.formattingStack[--this.formattingDepth];
+            this.formattingStack[this.formattingDepth] = null;
+            this.listener.endFormat(format, Listener.EMPTY_PARAMETERS);
         }
+        this.openFormats = 0;
     }
 
     private void ensureInline()
@@ -805,11 +1036,23 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
     @Override
     public Object visitTerminal(TerminalNode node)
     {
-        switch (node.getSymbol().getType()) {
+        onToken(node.getSymbol().getType(), TokenText.of(node.getSymbol()));
+
+        return null;
+    }
+
+    /**
+     * Handle a token that isn't part of any other syntax.
+     *
+     * @param tokenType the type of the token
+     * @param text the text of the token
+     */
+    void onToken(int tokenType, CharSequence text)
+    {
+        switch (tokenType) {
             case DokuWikiGrammarLexer.FREESTANDING_EMAIL:
                 ensureInline();
-                String email = node.getText();
-                email = email.substring(1, email.length() - 1);
+                String email = text.subSequence(1, text.length() - 1).toString();
                 ResourceReference reference = new ResourceReference(email, ResourceType.MAILTO);
                 this.listener.beginLink(reference, true, Listener.EMPTY_PARAMETERS);
                 this.listener.endLink(reference, true, Listener.EMPTY_PARAMETERS);
@@ -822,7 +1065,7 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
                 ensureInline();
                 // Prevent consecutive spaces as HTML renders them as one space while XWiki ensures that each space
                 // is printed.
-                if (this.listener.getNextEvent().eventType != EventType.ON_SPACE) {
+                if (this.listener.getLastEvent() != EventType.ON_SPACE) {
                     this.listener.onSpace();
                 }
                 break;
@@ -831,10 +1074,8 @@ public class DokuWikiParserVisitor extends DokuWikiGrammarBaseVisitor<Object>
                 break;
             default:
                 ensureInline();
-                this.plainParser.parse(node.getText(), this.listener);
+                this.plainParser.parse(text, this.listener);
                 break;
         }
-
-        return null;
     }
 }
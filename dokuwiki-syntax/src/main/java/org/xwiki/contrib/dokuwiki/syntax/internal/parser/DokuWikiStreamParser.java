@@ -19,21 +19,51 @@
  */
 package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
 
+import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.SequenceReader;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
 import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.VoidListener;
 import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.StreamParser;
 import org.xwiki.rendering.syntax.Syntax;
@@ -47,7 +77,7 @@ import org.xwiki.rendering.syntax.SyntaxType;
 @Component
 @Named(org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiStreamParser.SYNTAX_STRING)
 @Singleton
-public class DokuWikiStreamParser implements StreamParser
+public class DokuWikiStreamParser implements StreamParser, Initializable, Disposable
 {
     /**
      * The String version of the syntax.
@@ -68,9 +98,61 @@ public class DokuWikiStreamParser implements StreamParser
 
     private static final String LINE_BREAK = "\n";
 
+    private static final String WARM_UP_CORPUS = "warmup.txt";
+
     @Inject
     private Provider<DokuWikiParserVisitor> dokuWikiParserVisitorProvider;
 
+    @Inject
+    private DokuWikiParserConfiguration configuration;
+
+    @Inject
+    private DokuWikiGrammarCache grammarCache;
+
+    @Inject
+    private Logger logger;
+
+    private final AtomicLong twoStageParseCount = new AtomicLong();
+
+    private final AtomicLong fullLLFallbackCount = new AtomicLong();
+
+    private volatile ForkJoinPool chunkPool;
+
+    /**
+     * A chunk of the input that has been parsed separately.
+     */
+    private static final class Chunk
+    {
+        private final int start;
+
+        private final DokuWikiGrammarParser.DocumentContext tree;
+
+        private final int nextTokenStart;
+
+        Chunk(int start, DokuWikiGrammarParser.DocumentContext tree, int nextTokenStart)
+        {
+            this.start = start;
+            this.tree = tree;
+            this.nextTokenStart = nextTokenStart;
+        }
+    }
+
+    @Override
+    public void initialize()
+    {
+        if (this.configuration.isWarmUp()) {
+            warmUp();
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.chunkPool != null) {
+            this.chunkPool.shutdownNow();
+        }
+    }
+
     @Override
     public Syntax getSyntax()
     {
@@ -83,18 +165,308 @@ public class DokuWikiStreamParser implements StreamParser
         MetaData metaData = new MetaData();
         metaData.addMetaData("syntax", SYNTAX);
 
+        DokuWikiParserVisitor dokuWikiParserVisitor = this.dokuWikiParserVisitorProvider.get();
+        dokuWikiParserVisitor.setListener(listener);
+        dokuWikiParserVisitor.setMetaData(metaData);
+
         try {
-            // Pad with line breaks to make sure all rules match nicely.
-            String input = LINE_BREAK + IOUtils.toString(source) + LINE_BREAK;
-            DokuWikiGrammarLexer grammarLexer = new DokuWikiGrammarLexer(new ANTLRInputStream(input));
-            DokuWikiGrammarParser grammarParser = new DokuWikiGrammarParser(new CommonTokenStream(grammarLexer));
-            ParseTree tree = grammarParser.document();
-            DokuWikiParserVisitor dokuWikiParserVisitor = this.dokuWikiParserVisitorProvider.get();
-            dokuWikiParserVisitor.setListener(listener);
-            dokuWikiParserVisitor.setMetaData(metaData);
-            dokuWikiParserVisitor.visit(tree);
+            if (this.configuration.getParallelThreshold() > 0) {
+                parseParallel(source, dokuWikiParserVisitor);
+            } else {
+                parseSequential(source, dokuWikiParserVisitor);
+            }
         } catch (IOException e) {
             throw new ParseException("Failed to read input", e);
+        } catch (RuntimeException e) {
+            // The unbuffered char stream wraps read errors in a runtime exception.
+            if (e.getCause() instanceof IOException) {
+                throw new ParseException("Failed to read input", e.getCause());
+            }
+            throw e;
         }
+
+        int maxDFAStates = this.configuration.getMaxDFAStates();
+        if (maxDFAStates > 0 && this.grammarCache.getDFAStateCount() > maxDFAStates) {
+            this.grammarCache.clear();
+        }
+    }
+
+    /**
+     * Parse the given content and discard the events to fill the lexer and parser caches.
+     *
+     * @param source the content to parse
+     * @throws ParseException if the source cannot be read
+     */
+    public void warmUp(Reader source) throws ParseException
+    {
+        parse(source, new VoidListener());
+    }
+
+    /**
+     * @return the number of documents that have been parsed with two-stage prediction
+     */
+    public long getTwoStageParseCount()
+    {
+        return this.twoStageParseCount.get();
+    }
+
+    /**
+     * @return the number of documents parsed with two-stage prediction that couldn't be parsed with SLL prediction
+     *     and thus needed to be parsed again with full LL prediction
+     */
+    public long getFullLLFallbackCount()
+    {
+        return this.fullLLFallbackCount.get();
+    }
+
+    private void warmUp()
+    {
+        long start = System.currentTimeMillis();
+        int documentCount = 0;
+
+        try (InputStream corpus = getClass().getResourceAsStream(WARM_UP_CORPUS)) {
+            if (corpus != null) {
+                warmUp(new InputStreamReader(corpus, StandardCharsets.UTF_8));
+                documentCount++;
+            } else {
+                this.logger.warn("The bundled warm-up corpus [{}] is missing.", WARM_UP_CORPUS);
+            }
+        } catch (IOException | ParseException e) {
+            this.logger.warn("Failed to parse the bundled warm-up corpus. Root cause: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+
+        Path corpusPath = this.configuration.getWarmUpCorpus();
+        if (corpusPath != null) {
+            List<Path> files;
+            try (Stream<Path> filesStream = Files.walk(corpusPath)) {
+                files = filesStream
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.equals(corpusPath) || path.getFileName().toString().endsWith(".txt"))
+                    .collect(Collectors.toList());
+            } catch (IOException e) {
+                this.logger.warn("Failed to list the warm-up corpus [{}]. Root cause: {}", corpusPath,
+                    ExceptionUtils.getRootCauseMessage(e));
+                files = List.of();
+            }
+
+            for (Path file : files) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    warmUp(reader);
+                    documentCount++;
+                } catch (IOException | ParseException e) {
+                    this.logger.warn("Failed to parse the warm-up file [{}]. Root cause: {}", file,
+                        ExceptionUtils.getRootCauseMessage(e));
+                }
+            }
+        }
+
+        this.logger.debug("Warmed up the DokuWiki parser with [{}] documents in [{}] ms, the caches now contain [{}] "
+            + "DFA states.", documentCount, System.currentTimeMillis() - start, this.grammarCache.getDFAStateCount());
+    }
+
+    private void parseSequential(Reader source, DokuWikiParserVisitor dokuWikiParserVisitor) throws IOException
+    {
+        parse(createLexer(source), dokuWikiParserVisitor);
+    }
+
+    private void parse(DokuWikiGrammarLexer grammarLexer, DokuWikiParserVisitor dokuWikiParserVisitor)
+    {
+        if (this.configuration.isSinglePass()) {
+            new DokuWikiTokenParser(grammarLexer, dokuWikiParserVisitor).parse();
+        } else {
+            dokuWikiParserVisitor.visit(parseTree(grammarLexer));
+        }
+    }
+
+    private void parseParallel(Reader source, DokuWikiParserVisitor dokuWikiParserVisitor) throws IOException
+    {
+        // Pad with line breaks to make sure all rules match nicely.
+        CharArrayWriter writer = new CharArrayWriter();
+        writer.write(LINE_BREAK);
+        IOUtils.copy(source, writer);
+        writer.write(LINE_BREAK);
+        char[] input = writer.toCharArray();
+
+        if (input.length < this.configuration.getParallelThreshold()) {
+            parse(this.grammarCache.createLexer(new CharArrayCharStream(input, input.length)), dokuWikiParserVisitor);
+            return;
+        }
+
+        ForkJoinPool pool = getChunkPool();
+        int[] chunkStarts = getChunkStarts(input);
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(chunkStarts.length - 1);
+        for (int i = 0; i < chunkStarts.length - 1; i++) {
+            int start = chunkStarts[i];
+            int end = chunkStarts[i + 1];
+            tasks.add(pool.submit(() -> parseChunk(input, start, end)));
+        }
+
+        dokuWikiParserVisitor.beginDocument();
+
+        // The chunks start at line breaks, which are the start of a block unless the line break is inside a token
+        // like a code block. As lexing is deterministic, a chunk is only valid if it starts where the previous chunk
+        // ends. Otherwise, the chunk is parsed again from the end of the previous chunk, which is always the start of
+        // a block.
+        int position = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            Chunk chunk = tasks.get(i).join();
+            tasks.set(i, null);
+            int end = chunkStarts[i + 1];
+
+            if (chunk.start != position) {
+                if (position >= end) {
+                    // The whole chunk is part of a token of the previous chunk.
+                    continue;
+                }
+                chunk = parseChunk(input, position, end);
+            }
+
+            dokuWikiParserVisitor.visitDocumentPart(chunk.tree);
+            position = chunk.nextTokenStart;
+        }
+
+        dokuWikiParserVisitor.endDocument();
+
+        this.logger.debug("Parsed a document of [{}] characters in [{}] parallel chunks.", input.length,
+            tasks.size());
+    }
+
+    /**
+     * @return the pool that parses the chunks of large documents, created on first use so that it only exists when
+     *     parallel parsing is actually used
+     */
+    private ForkJoinPool getChunkPool()
+    {
+        ForkJoinPool pool = this.chunkPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = this.chunkPool;
+                if (pool == null) {
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                    this.chunkPool = pool;
+                }
+            }
+        }
+
+        return pool;
+    }
+
+    /**
+     * @param input the padded input
+     * @return the start of each chunk followed by the end of the input, each chunk except the first one starts at a
+     *     line break
+     */
+    private int[] getChunkStarts(char[] input)
+    {
+        int chunkSize = this.configuration.getParallelChunkSize();
+        int[] chunkStarts = new int[input.length / chunkSize + 2];
+        int count = 1;
+
+        for (int target = chunkSize; target < input.length; target = chunkStarts[count - 1] + chunkSize) {
+            int lineBreak = ArrayUtils.indexOf(input, '\n', target);
+            if (lineBreak < 0) {
+                break;
+            }
+            chunkStarts[count++] = lineBreak;
+        }
+
+        chunkStarts[count++] = input.length;
+        return Arrays.copyOf(chunkStarts, count);
+    }
+
+    /**
+     * Lex and parse a chunk of the input.
+     *
+     * @param input the padded input
+     * @param start the index where the first token of the chunk starts
+     * @param end the index from which on the next block ends the chunk
+     * @return the parsed chunk
+     */
+    private Chunk parseChunk(char[] input, int start, int end)
+    {
+        // The input stream doesn't copy the input, so all chunks share the same array.
+        CharStream charStream = new CharArrayCharStream(input, input.length);
+        charStream.seek(start);
+        DokuWikiGrammarLexer grammarLexer = this.grammarCache.createLexer(charStream);
+
+        List<Token> tokens = new ArrayList<>();
+        Token token = grammarLexer.nextToken();
+        while (token.getType() != Token.EOF
+            && (token.getStartIndex() < end || !DokuWikiTokenParser.isBlockStart(token.getType()))) {
+            tokens.add(token);
+            token = grammarLexer.nextToken();
+        }
+        int nextTokenStart = token.getType() != Token.EOF ? token.getStartIndex() : input.length;
+
+        return new Chunk(start, parseTree(new ListTokenSource(tokens)), nextTokenStart);
+    }
+
+    /**
+     * @param tokenSource the tokens to parse
+     * @return the parse tree of the tokens
+     */
+    DokuWikiGrammarParser.DocumentContext parseTree(TokenSource tokenSource)
+    {
+        DokuWikiGrammarParser grammarParser = this.grammarCache.createParser(new CommonTokenStream(tokenSource));
+        DokuWikiGrammarParser.DocumentContext tree;
+        if (this.configuration.isTwoStagePrediction()) {
+            tree = parseTwoStage(grammarParser);
+        } else {
+            tree = grammarParser.document();
+        }
+        return tree;
+    }
+
+    private DokuWikiGrammarParser.DocumentContext parseTwoStage(DokuWikiGrammarParser grammarParser)
+    {
+        this.twoStageParseCount.incrementAndGet();
+
+        // First try the faster SLL prediction and stop at the first error as it might just be a weakness of SLL.
+        grammarParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        grammarParser.removeErrorListeners();
+        grammarParser.setErrorHandler(new BailErrorStrategy());
+
+        DokuWikiGrammarParser.DocumentContext tree;
+        try {
+            tree = grammarParser.document();
+        } catch (ParseCancellationException e) {
+            this.fullLLFallbackCount.incrementAndGet();
+
+            // Parse again from the first token with full LL prediction and the default error handling. The token
+            // stream keeps all tokens so there is no need to lex the input again.
+            grammarParser.reset();
+            grammarParser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            grammarParser.setErrorHandler(new DefaultErrorStrategy());
+            grammarParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            tree = grammarParser.document();
+        }
+
+        return tree;
+    }
+
+    private DokuWikiGrammarLexer createLexer(Reader source) throws IOException
+    {
+        DokuWikiGrammarLexer grammarLexer;
+
+        if (this.configuration.isStreamingInput()) {
+            // Pad with line breaks to make sure all rules match nicely. The padding is added by the reader so the
+            // input never needs to be copied.
+            Reader paddedSource =
+                new SequenceReader(new StringReader(LINE_BREAK), source, new StringReader(LINE_BREAK));
+            CharStream charStream =
+                new UTF16UnbufferedCharStream(paddedSource, this.configuration.getStreamingWindowSize());
+            grammarLexer = this.grammarCache.createLexer(charStream);
+            // The unbuffered stream discards characters once they have been consumed so the tokens need to keep a
+            // copy of their text.
+            grammarLexer.setTokenFactory(new CommonTokenFactory(true));
+        } else {
+            // Pad with line breaks to make sure all rules match nicely. The tokens access their text through views on
+            // the input array.
+            String input = LINE_BREAK + IOUtils.toString(source) + LINE_BREAK;
+            grammarLexer = this.grammarCache.createLexer(new CharArrayCharStream(input));
+        }
+
+        return grammarLexer;
     }
 }
@@ -0,0 +1,385 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.rendering.listener.Format;
+
+/**
+ * Single-pass alternative to parsing a document with {@link DokuWikiGrammarParser} and walking the resulting parse
+ * tree with {@link DokuWikiParserVisitor}. The tokens are read directly from the lexer and the events are sent through
+ * the visitor as soon as a line has been read, so neither a parse tree nor a buffer of all tokens is ever built.
+ * <p>
+ * This relies on the structure of the grammar: every block starts with a token that starts with a newline and every
+ * inline syntax either consists of a single token or of two identical tokens. The rules implemented here must thus
+ * be kept in sync with the parser rules of the grammar.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiTokenParser
+{
+    private final TokenSource tokenSource;
+
+    private final DokuWikiParserVisitor visitor;
+
+    private final List<Token> line = new ArrayList<>();
+
+    /**
+     * @param tokenSource the lexer that provides the tokens
+     * @param visitor the visitor to send the events through, configured with the listener and the metadata
+     */
+    public DokuWikiTokenParser(TokenSource tokenSource, DokuWikiParserVisitor visitor)
+    {
+        this.tokenSource = tokenSource;
+        this.visitor = visitor;
+    }
+
+    /**
+     * Read all tokens and send the events of the whole document.
+     */
+    public void parse()
+    {
+        this.visitor.beginDocument();
+
+        Token token = this.tokenSource.nextToken();
+        while (token.getType() != Token.EOF) {
+            token = parseBlock(token);
+        }
+
+        this.visitor.endDocument();
+    }
+
+    /**
+     * @param token the first token of the block
+     * @return the first token after the block
+     */
+    private Token parseBlock(Token token)
+    {
+        Token next;
+
+        switch (token.getType()) {
+            case DokuWikiGrammarLexer.HEADING:
+                this.visitor.onHeading(TokenText.of(token));
+                next = readLine();
+                break;
+            case DokuWikiGrammarLexer.HORIZONTAL_LINE:
+                this.visitor.onHorizontalRule();
+                next = readLine();
+                break;
+            case DokuWikiGrammarLexer.PREFORMATTED:
+                next = parsePreformatted(token);
+                break;
+            case DokuWikiGrammarLexer.LIST_INDENT:
+                this.visitor.beginListItem(TokenText.of(token));
+                next = readLine();
+                parseContent(0, this.line.size());
+                this.visitor.closeFormatting();
+                break;
+            case DokuWikiGrammarLexer.QUOTE_START:
+                this.visitor.beginQuoteLine(TokenText.of(token));
+                next = readLine();
+                parseContent(0, this.line.size());
+                this.visitor.closeFormatting();
+                break;
+            case DokuWikiGrammarLexer.TABLE_START:
+                next = parseTable();
+                break;
+            case DokuWikiGrammarLexer.NEWLINE:
+                next = readLine();
+                this.visitor.beginParagraphLine(isBlank(), startsWithBlock());
+                parseContent(0, this.line.size());
+                break;
+            default:
+                // Cannot happen as the input starts with a newline and all inline tokens are followed by more inline
+                // tokens or a block start. Handle it like the content of the current block nevertheless.
+                this.visitor.onToken(token.getType(), TokenText.of(token));
+                next = this.tokenSource.nextToken();
+                break;
+        }
+
+        return next;
+    }
+
+    /**
+     * Read the tokens until the start of the next block.
+     *
+     * @return the first token of the next block
+     */
+    private Token readLine()
+    {
+        this.line.clear();
+
+        Token token = this.tokenSource.nextToken();
+        while (!isBlockStart(token.getType())) {
+            this.line.add(token);
+            token = this.tokenSource.nextToken();
+        }
+
+        return token;
+    }
+
+    private Token parsePreformatted(Token first)
+    {
+        List<CharSequence> lines = new ArrayList<>();
+
+        Token token = first;
+        while (token.getType() == DokuWikiGrammarLexer.PREFORMATTED) {
+            lines.add(TokenText.of(token));
+            token = this.tokenSource.nextToken();
+        }
+
+        this.visitor.onPreformatted(lines);
+
+        return token;
+    }
+
+    private Token parseTable()
+    {
+        this.visitor.beginTable();
+
+        Token token;
+        do {
+            token = readLine();
+            parseTableRow();
+        } while (token.getType() == DokuWikiGrammarLexer.TABLE_START);
+
+        this.visitor.endTable();
+
+        return token;
+    }
+
+    private void parseTableRow()
+    {
+        this.visitor.beginTableRow();
+
+        // The line starts with a cell separator and every further separator starts a new cell. The last "cell" is
+        // skipped as it should only be the end marker of the table row.
+        int cellStart = 0;
+        boolean skipping = true;
+        for (int i = 1; i < this.line.size(); i++) {
+            if (isCellSeparator(this.line.get(i).getType())) {
+                // Skip empty cells at the beginning of the row as these are also skipped by DokuWiki.
+                skipping = skipping && i == cellStart + 1;
+                if (!skipping) {
+                    parseTableCell(cellStart, i);
+                }
+                cellStart = i;
+            }
+        }
+
+        this.visitor.endTableRow();
+    }
+
+    /**
+     * @param start the index of the cell separator that starts the cell
+     * @param end the index of the cell separator that starts the next cell
+     */
+    private void parseTableCell(int start, int end)
+    {
+        int contentStart = start + 1;
+        int contentEnd = end;
+        int startPadding = 0;
+        int endPadding = 0;
+
+        if (contentStart < contentEnd && isPadding(this.line.get(contentStart).getType())) {
+            startPadding = paddingLength(this.line.get(contentStart));
+            contentStart++;
+        }
+
+        if (contentStart < contentEnd && isPadding(this.line.get(contentEnd - 1).getType())) {
+            endPadding = paddingLength(this.line.get(contentEnd - 1));
+            contentEnd--;
+        }
+
+        boolean isHeader = this.line.get(start).getType() == DokuWikiGrammarLexer.CARET;
+        Map<String, String> parameters = this.visitor.beginTableCell(isHeader, startPadding > 1,
+            endPadding > 1, contentStart == contentEnd);
+
+        parseContent(contentStart, contentEnd);
+
+        this.visitor.endTableCell(isHeader, parameters);
+    }
+
+    /**
+     * Send the events of the inline content of the current line.
+     *
+     * @param start the index of the first token
+     * @param end the index after the last token
+     */
+    private void parseContent(int start, int end)
+    {
+        int i = start;
+        while (i < end) {
+            Token token = this.line.get(i);
+            int type = token.getType();
+            Format pairFormat = getPairFormat(type);
+
+            if (pairFormat != null && i + 1 < end && this.line.get(i + 1).getType() == type) {
+                this.visitor.toggleFormat(pairFormat);
+                i += 2;
+            } else {
+                parseToken(type, TokenText.of(token));
+                i++;
+            }
+        }
+    }
+
+    private void parseToken(int type, CharSequence text)
+    {
+        switch (type) {
+            case DokuWikiGrammarLexer.LINK:
+                this.visitor.onLink(text);
+                break;
+            case DokuWikiGrammarLexer.MEDIA:
+                this.visitor.onMedia(text);
+                break;
+            case DokuWikiGrammarLexer.HTML:
+            case DokuWikiGrammarLexer.BLOCK_HTML:
+                this.visitor.onHtml(text, type == DokuWikiGrammarLexer.HTML);
+                break;
+            case DokuWikiGrammarLexer.PHP:
+            case DokuWikiGrammarLexer.BLOCK_PHP:
+                this.visitor.onPhp(text, type == DokuWikiGrammarLexer.PHP);
+                break;
+            case DokuWikiGrammarLexer.NOWIKI:
+            case DokuWikiGrammarLexer.NOWIKI_ALT:
+                this.visitor.onUnformatted(text, type == DokuWikiGrammarLexer.NOWIKI);
+                break;
+            case DokuWikiGrammarLexer.CODE:
+            case DokuWikiGrammarLexer.FILE:
+                this.visitor.onCode(text, type == DokuWikiGrammarLexer.FILE);
+                break;
+            case DokuWikiGrammarLexer.DEL_START:
+                this.visitor.maybeBeginFormat(Format.STRIKEDOUT, text);
+                break;
+            case DokuWikiGrammarLexer.DEL_END:
+                this.visitor.maybeEndFormat(Format.STRIKEDOUT, text);
+                break;
+            case DokuWikiGrammarLexer.SUB_START:
+                this.visitor.maybeBeginFormat(Format.SUBSCRIPT, text);
+                break;
+            case DokuWikiGrammarLexer.SUB_END:
+                this.visitor.maybeEndFormat(Format.SUBSCRIPT, text);
+                break;
+            case DokuWikiGrammarLexer.SUP_START:
+                this.visitor.maybeBeginFormat(Format.SUPERSCRIPT, text);
+                break;
+            case DokuWikiGrammarLexer.SUP_END:
+                this.visitor.maybeEndFormat(Format.SUPERSCRIPT, text);
+                break;
+            case DokuWikiGrammarLexer.FOOTNOTE:
+                this.visitor.onFootnote(text);
+                break;
+            case DokuWikiGrammarLexer.FREESTANDING_URL:
+            case DokuWikiGrammarLexer.FREESTANDING_WWW:
+                this.visitor.onFreeStandingUrl(text, type == DokuWikiGrammarLexer.FREESTANDING_WWW);
+                break;
+            case DokuWikiGrammarLexer.RSS:
+                this.visitor.onRss(text);
+                break;
+            default:
+                this.visitor.onToken(type, text);
+                break;
+        }
+    }
+
+    private boolean isBlank()
+    {
+        for (Token token : this.line) {
+            if (!StringUtils.isBlank(TokenText.of(token))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean startsWithBlock()
+    {
+        boolean result = false;
+
+        if (!this.line.isEmpty()) {
+            int type = this.line.get(0).getType();
+            result = type == DokuWikiGrammarLexer.CODE || type == DokuWikiGrammarLexer.FILE
+                || type == DokuWikiGrammarLexer.BLOCK_HTML || type == DokuWikiGrammarLexer.BLOCK_PHP;
+        }
+
+        return result;
+    }
+
+    private static Format getPairFormat(int type)
+    {
+        switch (type) {
+            case DokuWikiGrammarLexer.STAR:
+                return Format.BOLD;
+            case DokuWikiGrammarLexer.SLASH:
+                return Format.ITALIC;
+            case DokuWikiGrammarLexer.UNDERSCORE:
+                return Format.UNDERLINED;
+            case DokuWikiGrammarLexer.SINGLE_QUOTE:
+                return Format.MONOSPACE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param type the type of a token
+     * @return {@code true} if tokens of the given type start a new block, or end the document
+     */
+    static boolean isBlockStart(int type)
+    {
+        switch (type) {
+            case DokuWikiGrammarLexer.HEADING:
+            case DokuWikiGrammarLexer.HORIZONTAL_LINE:
+            case DokuWikiGrammarLexer.PREFORMATTED:
+            case DokuWikiGrammarLexer.LIST_INDENT:
+            case DokuWikiGrammarLexer.QUOTE_START:
+            case DokuWikiGrammarLexer.TABLE_START:
+            case DokuWikiGrammarLexer.NEWLINE:
+            case Token.EOF:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isCellSeparator(int type)
+    {
+        return type == DokuWikiGrammarLexer.CARET || type == DokuWikiGrammarLexer.PIPE;
+    }
+
+    private static int paddingLength(Token token)
+    {
+        return token.getStopIndex() - token.getStartIndex() + 1;
+    }
+
+    private static boolean isPadding(int type)
+    {
+        return type == DokuWikiGrammarLexer.SPACE || type == DokuWikiGrammarLexer.TAB;
+    }
+}
@@ -64,11 +64,11 @@ public class ImageSyntaxParser implements SingleDokuWikiSyntaxParser
     private InterWikiReferenceParser interWikiReferenceParser;
 
     @Override
-    public void parse(String imageArgument, Listener listener)
+    public void parse(CharSequence imageArgument, Listener listener)
     {
         Map<String, String> param = new HashMap<>();
 
-        String imageName = imageArgument;
+        String imageName = imageArgument.toString();
 
         String[] parts = StringUtils.splitByWholeSeparatorPreserveAllTokens(imageName, LABEL_SEPARATOR, 2);
         if (parts.length == 2) {
@@ -111,7 +111,9 @@ public class ImageSyntaxParser implements SingleDokuWikiSyntaxParser
 
         // Only generate an image if the mime type is an image
         if (generateImage) {
-            String mimeType = this.mimeTypeDetector.detectMimeType(imageName);
+            Map<String, String> mimeTypes =
+                listener instanceof MimeTypesProvider ? ((MimeTypesProvider) listener).getMimeTypes() : null;
+            String mimeType = this.mimeTypeDetector.detectMimeType(imageName, mimeTypes);
             generateImage = mimeType != null && mimeType.startsWith("image/");
             if (!generateImage) {
                 // If the mime type is not an image, then we should generate a link
@@ -19,8 +19,6 @@
  */
 package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
 
-import java.util.regex.Pattern;
-
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -37,7 +35,28 @@ import org.xwiki.rendering.listener.Listener;
 @Singleton
 public class InlinePlainParser implements SingleDokuWikiSyntaxParser
 {
-    private static final Pattern SPECIALSYMBOL_PATTERN = Pattern.compile("[!\"#$%&'()*+,-./:;<=>?@\\[\\]^_`{|}~\\\\]");
+    private static final byte WORD = 0;
+
+    private static final byte SPACE = 1;
+
+    private static final byte SPECIAL_SYMBOL = 2;
+
+    private static final String SPECIAL_SYMBOLS = "!\"#$%&'()*+,-./:;<=>?@[]^_`{|}~\\";
+
+    /**
+     * The class of each ASCII character, all other characters are words unless they are whitespace.
+     */
+    private static final byte[] ASCII_CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < ASCII_CLASSES.length; c++) {
+            if (Character.isWhitespace(c)) {
+                ASCII_CLASSES[c] = SPACE;
+            } else if (SPECIAL_SYMBOLS.indexOf(c) >= 0) {
+                ASCII_CLASSES[c] = SPECIAL_SYMBOL;
+            }
+        }
+    }
 
     /**
      * Parse the given text as plain text and send events to the given listener.
@@ -46,33 +65,39 @@ public class InlinePlainParser implements SingleDokuWikiSyntaxParser
      * @param listener the listener to send events to
      */
     @Override
-    public void parse(String text, Listener listener)
+    public void parse(CharSequence text, Listener listener)
     {
-        // Iterate over the characters in the text. If there is a space or special character, send the last word,
-        // otherwise add the character to the current word.
-        StringBuilder word = new StringBuilder();
+        // Iterate over the characters in the text. Every space and special character generates an event, the
+        // characters in between form words.
+        int length = text.length();
+        int i = 0;
 
-        for (int i = 0; i < text.length(); i++) {
+        while (i < length) {
             char c = text.charAt(i);
+            byte charClass = getCharClass(c);
 
-            if (Character.isWhitespace(c) || SPECIALSYMBOL_PATTERN.matcher(Character.toString(c)).matches()) {
-                if (word.length() > 0) {
-                    listener.onWord(word.toString());
-                    word.setLength(0);
-                }
-
-                if (Character.isWhitespace(c)) {
-                    listener.onSpace();
-                } else {
-                    listener.onSpecialSymbol(c);
-                }
+            if (charClass == SPACE) {
+                listener.onSpace();
+                i++;
+            } else if (charClass == SPECIAL_SYMBOL) {
+                listener.onSpecialSymbol(c);
+                i++;
             } else {
-                word.append(c);
+                int wordStart = i;
+                do {
+                    i++;
+                } while (i < length && getCharClass(text.charAt(i)) == WORD);
+                listener.onWord(text.subSequence(wordStart, i).toString());
             }
         }
+    }
 
-        if (word.length() > 0) {
-            listener.onWord(word.toString());
+    private static byte getCharClass(char c)
+    {
+        if (c < ASCII_CLASSES.length) {
+            return ASCII_CLASSES[c];
         }
+
+        return Character.isWhitespace(c) ? SPACE : WORD;
     }
 }
@@ -0,0 +1,474 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.util.Map;
+
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.ListType;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Listener that forwards all events directly to another listener and remembers the type of the last event. This is
+ * all the parser needs to know about the events it has already sent, e.g., to avoid generating two consecutive spaces.
+ * The mime types are taken from the other listener if it provides them.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class LastEventListener implements Listener, MimeTypesProvider
+{
+    private final Listener listener;
+
+    private EventType lastEvent;
+
+    /**
+     * @param listener the listener to forward the events to
+     */
+    public LastEventListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the type of the last event that was forwarded, {@code null} if there was no event yet
+     */
+    public EventType getLastEvent()
+    {
+        return this.lastEvent;
+    }
+
+    @Override
+    public Map<String, String> getMimeTypes()
+    {
+        return this.listener instanceof MimeTypesProvider ? ((MimeTypesProvider) this.listener).getMimeTypes() : null;
+    }
+
+    @Override
+    public void beginDocument(MetaData metadata)
+    {
+        this.lastEvent = EventType.BEGIN_DOCUMENT;
+        this.listener.beginDocument(metadata);
+    }
+
+    @Override
+    public void endDocument(MetaData metadata)
+    {
+        this.lastEvent = EventType.END_DOCUMENT;
+        this.listener.endDocument(metadata);
+    }
+
+    @Override
+    public void beginGroup(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_GROUP;
+        this.listener.beginGroup(parameters);
+    }
+
+    @Override
+    public void endGroup(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_GROUP;
+        this.listener.endGroup(parameters);
+    }
+
+    @Override
+    public void beginFormat(Format format, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_FORMAT;
+        this.listener.beginFormat(format, parameters);
+    }
+
+    @Override
+    public void endFormat(Format format, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_FORMAT;
+        this.listener.endFormat(format, parameters);
+    }
+
+    @Override
+    public void beginList(ListType type, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_LIST;
+        this.listener.beginList(type, parameters);
+    }
+
+    @Override
+    public void endList(ListType type, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_LIST;
+        this.listener.endList(type, parameters);
+    }
+
+    @Override
+    public void beginListItem()
+    {
+        this.lastEvent = EventType.BEGIN_LIST_ITEM;
+        this.listener.beginListItem();
+    }
+
+    @Override
+    public void beginListItem(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_LIST_ITEM;
+        this.listener.beginListItem(parameters);
+    }
+
+    @Override
+    public void endListItem()
+    {
+        this.lastEvent = EventType.END_LIST_ITEM;
+        this.listener.endListItem();
+    }
+
+    @Override
+    public void endListItem(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_LIST_ITEM;
+        this.listener.endListItem(parameters);
+    }
+
+    @Override
+    public void beginDefinitionList(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_DEFINITION_LIST;
+        this.listener.beginDefinitionList(parameters);
+    }
+
+    @Override
+    public void endDefinitionList(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_DEFINITION_LIST;
+        this.listener.endDefinitionList(parameters);
+    }
+
+    @Override
+    public void beginDefinitionTerm()
+    {
+        this.lastEvent = EventType.BEGIN_DEFINITION_TERM;
+        this.listener.beginDefinitionTerm();
+    }
+
+    @Override
+    public void endDefinitionTerm()
+    {
+        this.lastEvent = EventType.END_DEFINITION_TERM;
+        this.listener.endDefinitionTerm();
+    }
+
+    @Override
+    public void beginDefinitionDescription()
+    {
+        this.lastEvent = EventType.BEGIN_DEFINITION_DESCRIPTION;
+        this.listener.beginDefinitionDescription();
+    }
+
+    @Override
+    public void endDefinitionDescription()
+    {
+        this.lastEvent = EventType.END_DEFINITION_DESCRIPTION;
+        this.listener.endDefinitionDescription();
+    }
+
+    @Override
+    public void beginMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        this.lastEvent = EventType.BEGIN_MACRO_MARKER;
+        this.listener.beginMacroMarker(name, macroParameters, content, isInline);
+    }
+
+    @Override
+    public void endMacroMarker(String name, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        this.lastEvent = EventType.END_MACRO_MARKER;
+        this.listener.endMacroMarker(name, macroParameters, content, isInline);
+    }
+
+    @Override
+    public void beginParagraph(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_PARAGRAPH;
+        this.listener.beginParagraph(parameters);
+    }
+
+    @Override
+    public void endParagraph(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_PARAGRAPH;
+        this.listener.endParagraph(parameters);
+    }
+
+    @Override
+    public void beginSection(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_SECTION;
+        this.listener.beginSection(parameters);
+    }
+
+    @Override
+    public void endSection(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_SECTION;
+        this.listener.endSection(parameters);
+    }
+
+    @Override
+    public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_HEADER;
+        this.listener.beginHeader(level, id, parameters);
+    }
+
+    @Override
+    public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_HEADER;
+        this.listener.endHeader(level, id, parameters);
+    }
+
+    @Override
+    public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_LINK;
+        this.listener.beginLink(reference, freestanding, parameters);
+    }
+
+    @Override
+    public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_LINK;
+        this.listener.endLink(reference, freestanding, parameters);
+    }
+
+    @Override
+    public void beginQuotation(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_QUOTATION;
+        this.listener.beginQuotation(parameters);
+    }
+
+    @Override
+    public void endQuotation(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_QUOTATION;
+        this.listener.endQuotation(parameters);
+    }
+
+    @Override
+    public void beginQuotationLine()
+    {
+        this.lastEvent = EventType.BEGIN_QUOTATION_LINE;
+        this.listener.beginQuotationLine();
+    }
+
+    @Override
+    public void endQuotationLine()
+    {
+        this.lastEvent = EventType.END_QUOTATION_LINE;
+        this.listener.endQuotationLine();
+    }
+
+    @Override
+    public void beginTable(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_TABLE;
+        this.listener.beginTable(parameters);
+    }
+
+    @Override
+    public void endTable(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_TABLE;
+        this.listener.endTable(parameters);
+    }
+
+    @Override
+    public void beginTableRow(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_TABLE_ROW;
+        this.listener.beginTableRow(parameters);
+    }
+
+    @Override
+    public void endTableRow(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_TABLE_ROW;
+        this.listener.endTableRow(parameters);
+    }
+
+    @Override
+    public void beginTableCell(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_TABLE_CELL;
+        this.listener.beginTableCell(parameters);
+    }
+
+    @Override
+    public void endTableCell(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_TABLE_CELL;
+        this.listener.endTableCell(parameters);
+    }
+
+    @Override
+    public void beginTableHeadCell(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_TABLE_HEAD_CELL;
+        this.listener.beginTableHeadCell(parameters);
+    }
+
+    @Override
+    public void endTableHeadCell(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_TABLE_HEAD_CELL;
+        this.listener.endTableHeadCell(parameters);
+    }
+
+    @Override
+    public void beginFigure(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_FIGURE;
+        this.listener.beginFigure(parameters);
+    }
+
+    @Override
+    public void endFigure(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_FIGURE;
+        this.listener.endFigure(parameters);
+    }
+
+    @Override
+    public void beginFigureCaption(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.BEGIN_FIGURE_CAPTION;
+        this.listener.beginFigureCaption(parameters);
+    }
+
+    @Override
+    public void endFigureCaption(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.END_FIGURE_CAPTION;
+        this.listener.endFigureCaption(parameters);
+    }
+
+    @Override
+    public void beginMetaData(MetaData metadata)
+    {
+        this.lastEvent = EventType.BEGIN_METADATA;
+        this.listener.beginMetaData(metadata);
+    }
+
+    @Override
+    public void endMetaData(MetaData metadata)
+    {
+        this.lastEvent = EventType.END_METADATA;
+        this.listener.endMetaData(metadata);
+    }
+
+    @Override
+    public void onMacro(String id, Map<String, String> macroParameters, String content, boolean isInline)
+    {
+        this.lastEvent = EventType.ON_MACRO;
+        this.listener.onMacro(id, macroParameters, content, isInline);
+    }
+
+    @Override
+    public void onNewLine()
+    {
+        this.lastEvent = EventType.ON_NEW_LINE;
+        this.listener.onNewLine();
+    }
+
+    @Override
+    public void onSpace()
+    {
+        this.lastEvent = EventType.ON_SPACE;
+        this.listener.onSpace();
+    }
+
+    @Override
+    public void onSpecialSymbol(char symbol)
+    {
+        this.lastEvent = EventType.ON_SPECIAL_SYMBOL;
+        this.listener.onSpecialSymbol(symbol);
+    }
+
+    @Override
+    public void onWord(String word)
+    {
+        this.lastEvent = EventType.ON_WORD;
+        this.listener.onWord(word);
+    }
+
+    @Override
+    public void onId(String name)
+    {
+        this.lastEvent = EventType.ON_ID;
+        this.listener.onId(name);
+    }
+
+    @Override
+    public void onHorizontalLine(Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.ON_HORIZONTAL_LINE;
+        this.listener.onHorizontalLine(parameters);
+    }
+
+    @Override
+    public void onEmptyLines(int count)
+    {
+        this.lastEvent = EventType.ON_EMPTY_LINES;
+        this.listener.onEmptyLines(count);
+    }
+
+    @Override
+    public void onVerbatim(String content, boolean isInline, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.ON_VERBATIM;
+        this.listener.onVerbatim(content, isInline, parameters);
+    }
+
+    @Override
+    public void onRawText(String content, Syntax syntax)
+    {
+        this.lastEvent = EventType.ON_RAW_TEXT;
+        this.listener.onRawText(content, syntax);
+    }
+
+    @Override
+    public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.ON_IMAGE;
+        this.listener.onImage(reference, freestanding, parameters);
+    }
+
+    @Override
+    public void onImage(ResourceReference reference, boolean freestanding, String id, Map<String, String> parameters)
+    {
+        this.lastEvent = EventType.ON_IMAGE;
+        this.listener.onImage(reference, freestanding, id, parameters);
+    }
+}
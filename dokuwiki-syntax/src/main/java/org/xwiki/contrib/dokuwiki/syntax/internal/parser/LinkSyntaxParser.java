@@ -53,10 +53,10 @@ public class LinkSyntaxParser implements SingleDokuWikiSyntaxParser
     private SingleDokuWikiSyntaxParser inlinePlainParser;
 
     @Override
-    public void parse(String link, Listener listener)
+    public void parse(CharSequence link, Listener listener)
     {
         // Split the string at "|"
-        String[] linkParts = StringUtils.splitByWholeSeparatorPreserveAllTokens(link, LABEL_SEPARATOR, 2);
+        String[] linkParts = StringUtils.splitByWholeSeparatorPreserveAllTokens(link.toString(), LABEL_SEPARATOR, 2);
         String linkTarget = linkParts[0].trim();
 
         ResourceReference reference;
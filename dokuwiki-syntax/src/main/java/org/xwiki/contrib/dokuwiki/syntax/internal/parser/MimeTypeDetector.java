@@ -19,15 +19,34 @@
  */
 package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.tika.Tika;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 
 /**
  * Detect the mimetype of a URL or filename.
+ * <p>
+ * The mime type is looked up by the extension of the file name in a table in the format of DokuWiki's
+ * {@code conf/mime.conf}, either the one of the imported wiki (see {@link MimeTypesProvider}) or the bundled one,
+ * that contains the types detected by Apache Tika for the extensions that are commonly used in DokuWiki. Tika is only
+ * loaded when a file name with another extension needs to be detected.
  *
  * @version $Id$
  * @since 2.0
@@ -40,12 +59,58 @@ public class MimeTypeDetector implements Initializable
 
     private static final String PATH_SEPARATOR = "/";
 
-    private Tika tika;
+    private static final String BUNDLED_MIME_TYPES = "mime.conf";
+
+    private static final char EXTENSION_SEPARATOR = '.';
+
+    private static final char COMMENT = '#';
+
+    private static final char FORCE_DOWNLOAD = '!';
+
+    /**
+     * Characters that make Tika parse the file name as a URI with another path, so the extension can't be trusted.
+     */
+    private static final char[] URI_CHARACTERS = {'?', COMMENT, '%'};
+
+    @Inject
+    private Logger logger;
+
+    private Map<String, String> bundledMimeTypes = Map.of();
+
+    private volatile Tika tika;
 
     @Override
     public void initialize()
     {
-        this.tika = new Tika();
+        Map<String, String> mimeTypes = new HashMap<>();
+        try (InputStream stream = getClass().getResourceAsStream(BUNDLED_MIME_TYPES)) {
+            readMimeTypes(new InputStreamReader(stream, StandardCharsets.UTF_8), mimeTypes);
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the bundled mime types. Root cause: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+        this.bundledMimeTypes = mimeTypes;
+    }
+
+    /**
+     * Read mime types in the format of DokuWiki's {@code conf/mime.conf}: one extension and its mime type separated by
+     * whitespace per line, with comments starting with {@code #}. The {@code !} that marks mime types that DokuWiki
+     * always serves as download is removed.
+     *
+     * @param reader the mime types to read
+     * @param mimeTypes the map to put the mime types in, indexed by lower case extension, existing extensions are
+     *     overridden
+     * @throws IOException when failing to read the mime types
+     */
+    public static void readMimeTypes(Reader reader, Map<String, String> mimeTypes) throws IOException
+    {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        for (String line = bufferedReader.readLine(); line != null; line = bufferedReader.readLine()) {
+            String[] fields = StringUtils.split(StringUtils.substringBefore(line, COMMENT));
+            if (fields.length >= 2) {
+                mimeTypes.put(fields[0].toLowerCase(Locale.ROOT), StringUtils.removeStart(fields[1], FORCE_DOWNLOAD));
+            }
+        }
     }
 
     /**
@@ -53,6 +118,17 @@ public class MimeTypeDetector implements Initializable
      * @return the mime type of the filename or URL
      */
     public String detectMimeType(String name)
+    {
+        return detectMimeType(name, null);
+    }
+
+    /**
+     * @param name the filename or URL to detect the mime type of
+     * @param mimeTypes the mime types indexed by lower case file extension, {@code null} to use the bundled mime types
+     * @return the mime type of the filename or URL
+     * @since 3.2
+     */
+    public String detectMimeType(String name, Map<String, String> mimeTypes)
     {
         // Tika tries parsing the file name as URI and something like space:image.png won't have a path then.
         String fileName = name;
@@ -64,6 +140,50 @@ public class MimeTypeDetector implements Initializable
             fileName = StringUtils.substringAfterLast(fileName, PATH_SEPARATOR);
         }
 
-        return this.tika.detect(fileName);
+        String mimeType = getMimeTypeFromExtension(fileName, mimeTypes != null ? mimeTypes : this.bundledMimeTypes);
+
+        return mimeType != null ? mimeType : getTika().detect(fileName);
+    }
+
+    private static String getMimeTypeFromExtension(String fileName, Map<String, String> mimeTypes)
+    {
+        int separatorIndex = fileName.lastIndexOf(EXTENSION_SEPARATOR);
+        if (separatorIndex < 0 || StringUtils.containsAny(fileName, URI_CHARACTERS)) {
+            return null;
+        }
+
+        String extension = fileName.substring(separatorIndex + 1);
+        if (extension.isEmpty() || !isAsciiAlphanumeric(extension)) {
+            return null;
+        }
+
+        return mimeTypes.get(extension.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isAsciiAlphanumeric(String value)
+    {
+        for (int i = 0; i < value.length(); i++) {
+            if (!CharUtils.isAsciiAlphanumeric(value.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Tika getTika()
+    {
+        Tika result = this.tika;
+        if (result == null) {
+            synchronized (this) {
+                result = this.tika;
+                if (result == null) {
+                    result = new Tika();
+                    this.tika = result;
+                }
+            }
+        }
+
+        return result;
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.util.Map;
+
+/**
+ * Provides the mime types of the media of a wiki. The parser asks the listener it generates events on for the mime
+ * types that decide whether a media file is rendered as image, such that an import can classify the media like the
+ * imported wiki does.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public interface MimeTypesProvider
+{
+    /**
+     * @return the mime types indexed by lower case file extension, e.g., from the {@code conf/mime.conf} of the wiki
+     *     that is imported, {@code null} to use the bundled mime types
+     */
+    Map<String, String> getMimeTypes();
+}
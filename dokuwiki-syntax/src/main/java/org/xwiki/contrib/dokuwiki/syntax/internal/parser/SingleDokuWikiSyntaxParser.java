@@ -34,8 +34,9 @@ public interface SingleDokuWikiSyntaxParser
     /**
      * Parse the given content and call the listener to generate the corresponding events.
      *
-     * @param content the content to parse
+     * @param content the content to parse, possibly a view on the input of the parser that is only valid during the
+     *     call
      * @param listener the listener to call to generate events
      */
-    void parse(String content, Listener listener);
+    void parse(CharSequence content, Listener listener);
 }
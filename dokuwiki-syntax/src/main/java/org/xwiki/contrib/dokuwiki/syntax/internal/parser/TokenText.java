@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Access to the text of tokens and parse tree nodes based on the start and stop indexes of the tokens. When the input
+ * is a {@link CharArrayCharStream}, the text is a view on the input and no string is created. Otherwise, the tokens
+ * hold a copy of their text that is used instead.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public final class TokenText
+{
+    private TokenText()
+    {
+        // Utility class.
+    }
+
+    /**
+     * @param token a token
+     * @return the text of the token
+     */
+    public static CharSequence of(Token token)
+    {
+        if (token.getInputStream() instanceof CharArrayCharStream) {
+            return ((CharArrayCharStream) token.getInputStream()).getCharSequence(token.getStartIndex(),
+                token.getStopIndex());
+        }
+
+        return token.getText();
+    }
+
+    /**
+     * @param ctx a parse tree node
+     * @return the text of all tokens of the node
+     */
+    public static CharSequence of(ParserRuleContext ctx)
+    {
+        Token start = ctx.getStart();
+        Token stop = ctx.getStop();
+
+        if (stop != null && start.getInputStream() instanceof CharArrayCharStream) {
+            return ((CharArrayCharStream) start.getInputStream()).getCharSequence(start.getStartIndex(),
+                stop.getStopIndex());
+        }
+
+        return ctx.getText();
+    }
+
+    /**
+     * @param ctx a parse tree node
+     * @return the number of characters of all tokens of the node, computed without accessing the text
+     */
+    public static int length(ParserRuleContext ctx)
+    {
+        Token stop = ctx.getStop();
+
+        // The stop token of a node that doesn't contain any token is the token before the node.
+        return stop != null ? Math.max(0, stop.getStopIndex() - ctx.getStart().getStartIndex() + 1) : 0;
+    }
+
+    /**
+     * @param ctx a parse tree node
+     * @return {@code true} if the text of the node is empty or consists only of whitespace
+     */
+    public static boolean isBlank(ParserRuleContext ctx)
+    {
+        if (ctx.getStart().getInputStream() instanceof CharArrayCharStream) {
+            return StringUtils.isBlank(of(ctx));
+        }
+
+        // Check the text that the tokens hold instead of concatenating it.
+        return isBlank((ParseTree) ctx);
+    }
+
+    private static boolean isBlank(ParseTree tree)
+    {
+        if (tree instanceof TerminalNode) {
+            return StringUtils.isBlank(((TerminalNode) tree).getSymbol().getText());
+        }
+
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (!isBlank(tree.getChild(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
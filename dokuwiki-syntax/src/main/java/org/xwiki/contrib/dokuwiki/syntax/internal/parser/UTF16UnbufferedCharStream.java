@@ -0,0 +1,65 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+
+/**
+ * Unbuffered char stream that provides the UTF-16 characters of the reader like {@link CharArrayCharStream} instead of
+ * code points. Surrogate pairs are thus lexed exactly like when the input is loaded into memory and unpaired
+ * surrogates are accepted instead of failing the parsing.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class UTF16UnbufferedCharStream extends UnbufferedCharStream
+{
+    /**
+     * @param input the reader to read the characters from
+     * @param bufferSize the initial size of the buffer
+     */
+    public UTF16UnbufferedCharStream(Reader input, int bufferSize)
+    {
+        super(input, bufferSize);
+    }
+
+    @Override
+    protected int fill(int count)
+    {
+        for (int i = 0; i < count; i++) {
+            if (this.n > 0 && this.data[this.n - 1] == IntStream.EOF) {
+                return i;
+            }
+
+            try {
+                add(nextChar());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import org.junit.runner.RunWith;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.test.integration.RenderingTestSuite;
+
+/**
+ * Run all specific tests with two-stage prediction disabled to make sure that the full LL prediction produces the same
+ * events as the default two-stage SLL/LL prediction.
+ *
+ * @version $Id$
+ */
+@RunWith(RenderingTestSuite.class)
+@RenderingTestSuite.Scope(value = "dokuwiki10.specific")
+public class DokuWikiFullLLSpecificTest
+{
+    /**
+     * Disable two-stage prediction.
+     *
+     * @param componentManager the component manager of the test
+     * @throws Exception if the parser configuration can't be found
+     */
+    @RenderingTestSuite.Initialized
+    public void initialize(ComponentManager componentManager) throws Exception
+    {
+        componentManager.<DokuWikiParserConfiguration>getInstance(DokuWikiParserConfiguration.class)
+            .setTwoStagePrediction(false);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import org.junit.runner.RunWith;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.test.integration.RenderingTestSuite;
+
+/**
+ * Run all specific tests with parallel parsing of tiny chunks to make sure that the events are correctly joined between
+ * the chunks.
+ *
+ * @version $Id$
+ */
+@RunWith(RenderingTestSuite.class)
+@RenderingTestSuite.Scope(value = "dokuwiki10.specific")
+public class DokuWikiParallelSpecificTest
+{
+    /**
+     * Enable parallel parsing for all documents with tiny chunks.
+     *
+     * @param componentManager the component manager of the test
+     * @throws Exception if the parser configuration can't be found
+     */
+    @RenderingTestSuite.Initialized
+    public void initialize(ComponentManager componentManager) throws Exception
+    {
+        DokuWikiParserConfiguration configuration =
+            componentManager.getInstance(DokuWikiParserConfiguration.class);
+        configuration.setParallelThreshold(1);
+        configuration.setParallelChunkSize(16);
+    }
+}
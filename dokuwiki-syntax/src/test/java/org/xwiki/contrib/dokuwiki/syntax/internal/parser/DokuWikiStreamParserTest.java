@@ -0,0 +1,224 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.syntax.internal.parser;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.xwiki.configuration.internal.MemoryConfigurationSource;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link DokuWikiStreamParser}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@AllComponents
+class DokuWikiStreamParserTest
+{
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "lone high \uD800 surrogate",
+        "lone low \uDC00 surrogate",
+        "swapped \uDC00\uD800 surrogates",
+        "trailing high surrogate \uD800",
+        "**bold 😀 pair** and //italic \uD800//",
+        "[[page\uDC00|link \uD800]] {{media\uD800.png}}\n\n  * item \uDFFF\n\n^ head \uD800 ^\n| cell \uDBFF |"
+    })
+    void parseUnpairedSurrogatesInBothInputModes(String input) throws Exception
+    {
+        String buffered = parse(input, false);
+        String streamed = parse(input, true);
+
+        assertEquals(buffered, streamed);
+        // The event renderer escapes the surrogates as their decimal value.
+        assertTrue(buffered.matches("(?s).*\\(\\(\\(5[5-7]\\d{3}\\)\\)\\).*"), buffered);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 4096 })
+    void parseWithDifferentStreamingWindowSizes(int windowSize) throws Exception
+    {
+        String input = "====== Title ======\n\nSome **bold** text with a [[link|label]] and ''code''.\n\n"
+            + "<code java>\nint a = 1;\n</code>\n\n  * one\n  * two\n";
+
+        this.componentManager.<DokuWikiParserConfiguration>getInstance(DokuWikiParserConfiguration.class)
+            .setStreamingWindowSize(windowSize);
+
+        assertEquals(parse(input, false), parse(input, true));
+    }
+
+    @Test
+    void streamInputWhenConfigured() throws Exception
+    {
+        MemoryConfigurationSource configurationSource = this.componentManager.registerMemoryConfigurationSource();
+        configurationSource.setProperty("dokuwiki.parser.streamingInput", true);
+        configurationSource.setProperty("dokuwiki.parser.streamingWindowSize", 2);
+
+        DokuWikiParserConfiguration configuration =
+            this.componentManager.getInstance(DokuWikiParserConfiguration.class);
+
+        assertTrue(configuration.isStreamingInput());
+        assertEquals(2, configuration.getStreamingWindowSize());
+    }
+
+    @Test
+    void parseInParallelOrSinglePassBelowThreshold() throws Exception
+    {
+        String input = "====== Title ======\n\nSome **bold** text.\n\n<code>\ncode\n\nblock\n</code>\n\n"
+            + "^ a ^ b ^\n| c | d |\n\n  * one\n  * two\n";
+        DokuWikiParserConfiguration configuration =
+            this.componentManager.getInstance(DokuWikiParserConfiguration.class);
+        DokuWikiStreamParser parser =
+            (DokuWikiStreamParser) this.componentManager.<StreamParser>getInstance(StreamParser.class,
+                DokuWikiStreamParser.SYNTAX_STRING);
+        String expected = parse(input, false);
+
+        configuration.setSinglePass(true);
+        configuration.setParallelThreshold(input.length() * 2);
+        long twoStageParseCount = parser.getTwoStageParseCount();
+
+        assertEquals(expected, parse(input, false));
+        // The single-pass parser doesn't build a parse tree.
+        assertEquals(twoStageParseCount, parser.getTwoStageParseCount());
+
+        configuration.setParallelThreshold(1);
+        configuration.setParallelChunkSize(8);
+
+        assertEquals(expected, parse(input, false));
+    }
+
+    @Test
+    void parseInSinglePassWhenConfigured() throws Exception
+    {
+        String input = "Some **bold** text\n\n  * and a list";
+        String expected = parse(input, false);
+        this.componentManager.registerMemoryConfigurationSource().setProperty("dokuwiki.parser.singlePass", true);
+        this.componentManager.registerComponent(DokuWikiParserConfiguration.class);
+        this.componentManager.registerComponent(DokuWikiStreamParser.class);
+        DokuWikiStreamParser parser =
+            (DokuWikiStreamParser) this.componentManager.<StreamParser>getInstance(StreamParser.class,
+                DokuWikiStreamParser.SYNTAX_STRING);
+
+        assertEquals(expected, parse(input, false));
+        // The single-pass parser doesn't build a parse tree.
+        assertEquals(0, parser.getTwoStageParseCount());
+    }
+
+    @Test
+    void parseInParallelWhenConfigured() throws Exception
+    {
+        String input = "====== Title ======\n\nSome **bold** text.\n\n^ a ^ b ^\n| c | d |\n\n  * one\n  * two\n";
+        String expected = parse(input, false);
+        MemoryConfigurationSource configurationSource = this.componentManager.registerMemoryConfigurationSource();
+        configurationSource.setProperty("dokuwiki.parser.parallelThreshold", 1);
+        configurationSource.setProperty("dokuwiki.parser.parallelChunkSize", 8);
+        this.componentManager.registerComponent(DokuWikiParserConfiguration.class);
+        this.componentManager.registerComponent(DokuWikiStreamParser.class);
+
+        DokuWikiParserConfiguration configuration =
+            this.componentManager.getInstance(DokuWikiParserConfiguration.class);
+        assertEquals(1, configuration.getParallelThreshold());
+        assertEquals(8, configuration.getParallelChunkSize());
+        assertEquals(expected, parse(input, false));
+    }
+
+    @Test
+    void warmUpOnlyWhenEnabled() throws Exception
+    {
+        DokuWikiGrammarCache grammarCache = this.componentManager.getInstance(DokuWikiGrammarCache.class);
+        this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+
+        assertEquals(0, grammarCache.getDFAStateCount());
+
+        this.componentManager.<DokuWikiParserConfiguration>getInstance(DokuWikiParserConfiguration.class)
+            .setWarmUp(true);
+        this.componentManager.registerComponent(DokuWikiStreamParser.class);
+        this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+
+        assertTrue(grammarCache.getDFAStateCount() > 0);
+    }
+
+    @Test
+    void warmUpWhenConfigured() throws Exception
+    {
+        this.componentManager.registerMemoryConfigurationSource().setProperty("dokuwiki.parser.warmUp", true);
+        DokuWikiGrammarCache grammarCache = this.componentManager.getInstance(DokuWikiGrammarCache.class);
+
+        this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+
+        assertTrue(grammarCache.getDFAStateCount() > 0);
+    }
+
+    @Test
+    void countFullLLFallbacks() throws Exception
+    {
+        DokuWikiStreamParser parser =
+            (DokuWikiStreamParser) this.componentManager.<StreamParser>getInstance(StreamParser.class,
+                DokuWikiStreamParser.SYNTAX_STRING);
+        long twoStageParseCount = parser.getTwoStageParseCount();
+        long fullLLFallbackCount = parser.getFullLLFallbackCount();
+
+        parse("Some **bold** text\n\n  * and a list", false);
+
+        assertEquals(twoStageParseCount + 1, parser.getTwoStageParseCount());
+        assertEquals(fullLLFallbackCount, parser.getFullLLFallbackCount());
+
+        // The grammar accepts all tokens produced by the lexer, so use a table row without cells to make SLL fail.
+        assertNotNull(parser.parseTree(new ListTokenSource(List.of(
+            new CommonToken(DokuWikiGrammarLexer.TABLE_START, "\n"),
+            new CommonToken(DokuWikiGrammarLexer.NEWLINE, "\n")))));
+
+        assertEquals(twoStageParseCount + 2, parser.getTwoStageParseCount());
+        assertEquals(fullLLFallbackCount + 1, parser.getFullLLFallbackCount());
+    }
+
+    private String parse(String input, boolean streamingInput) throws Exception
+    {
+        this.componentManager.<DokuWikiParserConfiguration>getInstance(DokuWikiParserConfiguration.class)
+            .setStreamingInput(streamingInput);
+
+        StreamParser parser = this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+        PrintRendererFactory rendererFactory = this.componentManager.getInstance(PrintRendererFactory.class, "event/1.0");
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        parser.parse(new StringReader(input), rendererFactory.createRenderer(printer));
+
+        return printer.toString();
+    }
+}
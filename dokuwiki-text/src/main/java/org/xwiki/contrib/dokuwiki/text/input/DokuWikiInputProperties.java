@@ -52,11 +52,83 @@ public class DokuWikiInputProperties extends DefaultFilterStreamProperties
      */
     public static final FilterStreamType FILTER_STREAM_TYPE = new FilterStreamType(DOKUWIKI, DATA_TEXT);
 
+    /**
+     * The default maximum memory (in bytes) used to cache converted page contents.
+     *
+     * @since 3.2
+     */
+    public static final long DEFAULT_CONVERSION_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The default maximum number of pages that are converted in advance while the events of the previous pages are
+     * sent, 0 meaning twice the number of processors.
+     *
+     * @since 3.2
+     */
+    public static final int DEFAULT_MAX_PAGES_IN_FLIGHT = 0;
+
+    /**
+     * The default maximum number of revisions of all pages that are converted in advance while the events of the
+     * previous revisions are sent.
+     *
+     * @since 3.2
+     */
+    public static final int DEFAULT_MAX_REVISIONS_IN_FLIGHT = 64;
+
+    /**
+     * The default number of upcoming pages whose files are read ahead of their conversion.
+     *
+     * @since 3.2
+     */
+    public static final int DEFAULT_PAGE_PREFETCH_DEPTH = 16;
+
+    /**
+     * The default maximum number of resolved link and media targets that are cached.
+     *
+     * @since 3.2
+     */
+    public static final int DEFAULT_LINK_RESOLUTION_CACHE_SIZE = 10000;
+
     /**
      * @see #getSource()
      */
     private InputSource source;
 
+    /**
+     * @see #getConversionCacheSize()
+     */
+    private long conversionCacheSize = DEFAULT_CONVERSION_CACHE_SIZE;
+
+    /**
+     * @see #isIncrementalConversion()
+     */
+    private boolean incrementalConversion = true;
+
+    /**
+     * @see #getMaxPagesInFlight()
+     */
+    private int maxPagesInFlight = DEFAULT_MAX_PAGES_IN_FLIGHT;
+
+    /**
+     * @see #getMaxRevisionsInFlight()
+     */
+    private int maxRevisionsInFlight = DEFAULT_MAX_REVISIONS_IN_FLIGHT;
+
+    /**
+     * @see #getPagePrefetchDepth()
+     */
+    private int pagePrefetchDepth = DEFAULT_PAGE_PREFETCH_DEPTH;
+
+    /**
+     * @see #getMaxRevisions()
+     */
+    private int maxRevisions;
+
+    /**
+     * @see #getLinkResolutionCacheSize()
+     */
+    private int linkResolutionCacheSize = DEFAULT_LINK_RESOLUTION_CACHE_SIZE;
+
     /**
      * @return input File or stream source of Dokuwiki Data archive/folder.
      */
@@ -75,4 +147,166 @@ public class DokuWikiInputProperties extends DefaultFilterStreamProperties
     {
         this.source = source;
     }
+
+    /**
+     * @return the maximum memory (in bytes) used to cache the converted content of pages, 0 to disable the cache
+     * @since 3.2
+     */
+    @PropertyName("Conversion cache size")
+    @PropertyDescription("The maximum memory (in bytes) used to cache the converted content of pages, such that "
+        + "identical revisions of a page are converted only once. 0 disables the cache.")
+    public long getConversionCacheSize()
+    {
+        return this.conversionCacheSize;
+    }
+
+    /**
+     * @param conversionCacheSize the maximum memory (in bytes) used to cache the converted content of pages, 0 to
+     *     disable the cache
+     * @since 3.2
+     */
+    public void setConversionCacheSize(long conversionCacheSize)
+    {
+        this.conversionCacheSize = conversionCacheSize;
+    }
+
+    /**
+     * @return {@code true} if only the blocks that changed since the previous revision of a page should be converted
+     * @since 3.2
+     */
+    @PropertyName("Incremental conversion")
+    @PropertyDescription("Only convert the blocks of a page revision that changed since the previous revision and "
+        + "reuse the converted content of the other blocks. The result is the same as converting each revision "
+        + "completely.")
+    public boolean isIncrementalConversion()
+    {
+        return this.incrementalConversion;
+    }
+
+    /**
+     * @param incrementalConversion {@code true} if only the blocks that changed since the previous revision of a page
+     *     should be converted
+     * @since 3.2
+     */
+    public void setIncrementalConversion(boolean incrementalConversion)
+    {
+        this.incrementalConversion = incrementalConversion;
+    }
+
+    /**
+     * @return the maximum number of pages that are converted in parallel or wait for being sent, 1 to convert the
+     *     pages one after another and 0 for twice the number of processors
+     * @since 3.2
+     */
+    @PropertyName("Maximum pages in flight")
+    @PropertyDescription("The maximum number of pages that are converted in parallel or that wait until the previous "
+        + "pages have been imported. The pages are still imported in the same order. 1 converts the pages one after "
+        + "another. 0, the default, uses twice the number of processors.")
+    public int getMaxPagesInFlight()
+    {
+        return this.maxPagesInFlight;
+    }
+
+    /**
+     * @param maxPagesInFlight the maximum number of pages that are converted in parallel or wait for being sent, 1 to
+     *     convert the pages one after another and 0 for twice the number of processors
+     * @since 3.2
+     */
+    public void setMaxPagesInFlight(int maxPagesInFlight)
+    {
+        this.maxPagesInFlight = maxPagesInFlight;
+    }
+
+    /**
+     * @return the maximum number of revisions, of all pages together, that are converted in advance or wait for being
+     *     sent, 1 to convert the revisions of a page one after another
+     * @since 3.2
+     */
+    @PropertyName("Maximum revisions in flight")
+    @PropertyDescription("The maximum number of revisions, of all pages together, that are converted in advance or "
+        + "that wait until the previous revisions have been imported. This limits the memory used by pages with many "
+        + "revisions. The revisions are still imported in the same order. 1 converts the revisions of a page one after "
+        + "another.")
+    public int getMaxRevisionsInFlight()
+    {
+        return this.maxRevisionsInFlight;
+    }
+
+    /**
+     * @param maxRevisionsInFlight the maximum number of revisions, of all pages together, that are converted in
+     *     advance or wait for being sent, 1 to convert the revisions of a page one after another
+     * @since 3.2
+     */
+    public void setMaxRevisionsInFlight(int maxRevisionsInFlight)
+    {
+        this.maxRevisionsInFlight = maxRevisionsInFlight;
+    }
+
+    /**
+     * @return the number of upcoming pages whose text and metadata files are read in the background, 0 to read the
+     *     files of a page when it is converted
+     * @since 3.2
+     */
+    @PropertyName("Page prefetch depth")
+    @PropertyDescription("The number of upcoming pages whose text and metadata files are read in the background "
+        + "ahead of their conversion, which hides the latency of slow storage like network shares. "
+        + "0 reads the files of a page when it is converted.")
+    public int getPagePrefetchDepth()
+    {
+        return this.pagePrefetchDepth;
+    }
+
+    /**
+     * @param pagePrefetchDepth the number of upcoming pages whose text and metadata files are read in the background,
+     *     0 to read the files of a page when it is converted
+     * @since 3.2
+     */
+    public void setPagePrefetchDepth(int pagePrefetchDepth)
+    {
+        this.pagePrefetchDepth = pagePrefetchDepth;
+    }
+
+    /**
+     * @return the maximum number of the most recent revisions of a page that are imported, 0 to import all revisions
+     * @since 3.2
+     */
+    @PropertyName("Maximum revisions per page")
+    @PropertyDescription("The maximum number of the most recent revisions of a page that are imported. The attic "
+        + "files of older revisions aren't read at all. 0 imports all revisions.")
+    public int getMaxRevisions()
+    {
+        return this.maxRevisions;
+    }
+
+    /**
+     * @param maxRevisions the maximum number of the most recent revisions of a page that are imported, 0 to import
+     *     all revisions
+     * @since 3.2
+     */
+    public void setMaxRevisions(int maxRevisions)
+    {
+        this.maxRevisions = maxRevisions;
+    }
+
+    /**
+     * @return the maximum number of resolved link and media targets that are cached, 0 to disable the cache
+     * @since 3.2
+     */
+    @PropertyName("Link resolution cache size")
+    @PropertyDescription("The maximum number of link and media targets whose resolved XWiki reference is cached "
+        + "such that targets that are used on many pages are resolved only once. 0 disables the cache.")
+    public int getLinkResolutionCacheSize()
+    {
+        return this.linkResolutionCacheSize;
+    }
+
+    /**
+     * @param linkResolutionCacheSize the maximum number of resolved link and media targets that are cached, 0 to
+     *     disable the cache
+     * @since 3.2
+     */
+    public void setLinkResolutionCacheSize(int linkResolutionCacheSize)
+    {
+        this.linkResolutionCacheSize = linkResolutionCacheSize;
+    }
 }
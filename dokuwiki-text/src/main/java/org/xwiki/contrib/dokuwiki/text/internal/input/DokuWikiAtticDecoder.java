@@ -0,0 +1,296 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Decodes the attic files that store the revisions of the pages. DokuWiki compresses them with gzip or bzip2 depending
+ * on its configuration, or stores them uncompressed, which is visible in the suffix after {@code .txt}.
+ * <p>
+ * Gzip files are inflated in a single step from the bytes of the file into an array of the size that is stored at
+ * the end of the file, and the inflaters are reused, as most revisions of a large wiki are gzip files.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiAtticDecoder implements AutoCloseable
+{
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private static final String BZIP2_SUFFIX = ".bz2";
+
+    private static final String PLAIN_SUFFIX = ".txt";
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private static final int GZIP_DEFLATE_METHOD = 8;
+
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private static final String END_OF_HEADER = "Unexpected end of GZIP header";
+
+    private static final String CORRUPT_TRAILER = "Corrupt GZIP trailer";
+
+    private static final int FLAG_HEADER_CRC = 2;
+
+    private static final int FLAG_EXTRA = 4;
+
+    private static final int FLAG_NAME = 8;
+
+    private static final int FLAG_COMMENT = 16;
+
+    /**
+     * The highest compression ratio that the size in the trailer is trusted for, as the size isn't checked before the
+     * content has been inflated. The output grows when the content is larger.
+     */
+    private static final int MAX_SIZE_HINT_RATIO = 64;
+
+    private static final int HEADER_CRC_MASK = 0xffff;
+
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    private static final int BYTE_MASK = 0xff;
+
+    private static final int BYTE_BITS = 8;
+
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param file the attic file
+     * @return the content of the revision
+     * @throws IOException if the file cannot be read or decoded
+     */
+    public String decode(Path file) throws IOException
+    {
+        String fileName = file.getFileName().toString();
+
+        String content;
+        if (fileName.endsWith(GZIP_SUFFIX)) {
+            content = gunzip(Files.readAllBytes(file));
+        } else if (fileName.endsWith(BZIP2_SUFFIX)) {
+            try (InputStream inputStream = new BZip2CompressorInputStream(Files.newInputStream(file))) {
+                content = new String(IOUtils.toByteArray(inputStream), StandardCharsets.UTF_8);
+            }
+        } else if (fileName.endsWith(PLAIN_SUFFIX)) {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } else {
+            content = decompress(Files.readAllBytes(file));
+        }
+
+        return content;
+    }
+
+    private String decompress(byte[] data) throws IOException
+    {
+        // An unknown suffix, let Commons Compress detect the format.
+        try (InputStream inputStream =
+            new CompressorStreamFactory().createCompressorInputStream(new ByteArrayInputStream(data))) {
+            return new String(IOUtils.toByteArray(inputStream), StandardCharsets.UTF_8);
+        } catch (CompressorException e) {
+            throw new IOException("Unsupported compression of attic file", e);
+        }
+    }
+
+    private String gunzip(byte[] data) throws IOException
+    {
+        if (!isGzipMember(data, 0)) {
+            throw new ZipException("Not in GZIP format");
+        }
+
+        Inflater inflater = this.inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+
+        try {
+            byte[] output = new byte[getSizeHint(data)];
+            int length = 0;
+
+            // A file can consist of several members, which are concatenated.
+            int offset = 0;
+            while (isGzipMember(data, offset)) {
+                int start = length;
+                int contentOffset = skipHeader(data, offset);
+                inflater.reset();
+                inflater.setInput(data, contentOffset, data.length - contentOffset);
+                while (!inflater.finished()) {
+                    if (length == output.length) {
+                        output = Arrays.copyOf(output, Math.max(MIN_BUFFER_SIZE, output.length * 2));
+                    }
+                    length += inflate(inflater, output, length);
+                }
+                offset = checkTrailer(data, data.length - inflater.getRemaining(), output, start, length);
+            }
+
+            return new String(output, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            this.inflaters.add(inflater);
+        }
+    }
+
+    private static int inflate(Inflater inflater, byte[] output, int offset) throws IOException
+    {
+        try {
+            int count = inflater.inflate(output, offset, output.length - offset);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            return count;
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+    }
+
+    private static int getSizeHint(byte[] data)
+    {
+        // The trailer of the last member contains the size of its content modulo 2^32.
+        int size = data.length >= GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE ? readInt(data, data.length - Integer.BYTES) : 0;
+        if (size <= 0) {
+            size = MIN_BUFFER_SIZE;
+        }
+
+        return (int) Math.min(size, Math.max(MIN_BUFFER_SIZE, (long) data.length * MAX_SIZE_HINT_RATIO));
+    }
+
+    private static boolean isGzipMember(byte[] data, int offset)
+    {
+        return offset + GZIP_HEADER_SIZE <= data.length && (data[offset] & BYTE_MASK) == GZIP_MAGIC_1
+            && (data[offset + 1] & BYTE_MASK) == GZIP_MAGIC_2;
+    }
+
+    private static int skipHeader(byte[] data, int offset) throws IOException
+    {
+        if (data[offset + 2] != GZIP_DEFLATE_METHOD) {
+            throw new ZipException("Unsupported compression method");
+        }
+
+        int flags = data[offset + 3];
+        int position = offset + GZIP_HEADER_SIZE;
+        if ((flags & FLAG_EXTRA) != 0) {
+            if (position + Short.BYTES > data.length) {
+                throw new EOFException(END_OF_HEADER);
+            }
+            position += Short.BYTES + readShort(data, position);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            position = skipZeroTerminated(data, position);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            position = skipZeroTerminated(data, position);
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            if (position + Short.BYTES > data.length) {
+                throw new EOFException(END_OF_HEADER);
+            }
+            checkHeaderCrc(data, offset, position);
+            position += Short.BYTES;
+        }
+        if (position > data.length) {
+            throw new EOFException(END_OF_HEADER);
+        }
+
+        return position;
+    }
+
+    private static void checkHeaderCrc(byte[] data, int offset, int end) throws IOException
+    {
+        // The header CRC consists of the two lower bytes of the CRC-32 of the header before it.
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, end - offset);
+        if (readShort(data, end) != ((int) crc.getValue() & HEADER_CRC_MASK)) {
+            throw new ZipException("Corrupt GZIP header");
+        }
+    }
+
+    private static int skipZeroTerminated(byte[] data, int offset) throws IOException
+    {
+        int position = offset;
+        while (position < data.length && data[position] != 0) {
+            position++;
+        }
+        if (position == data.length) {
+            throw new EOFException(END_OF_HEADER);
+        }
+
+        return position + 1;
+    }
+
+    /**
+     * @return the offset after the trailer
+     */
+    private static int checkTrailer(byte[] data, int offset, byte[] output, int start, int end) throws IOException
+    {
+        if (offset + GZIP_TRAILER_SIZE > data.length) {
+            throw new EOFException("Unexpected end of GZIP trailer");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(output, start, end - start);
+        if (readInt(data, offset) != (int) crc.getValue()) {
+            throw new ZipException(CORRUPT_TRAILER);
+        }
+        if (readInt(data, offset + Integer.BYTES) != end - start) {
+            throw new ZipException(CORRUPT_TRAILER);
+        }
+
+        return offset + GZIP_TRAILER_SIZE;
+    }
+
+    private static int readShort(byte[] data, int offset)
+    {
+        return (data[offset] & BYTE_MASK) | (data[offset + 1] & BYTE_MASK) << BYTE_BITS;
+    }
+
+    private static int readInt(byte[] data, int offset)
+    {
+        return readShort(data, offset) | readShort(data, offset + Short.BYTES) << (2 * BYTE_BITS);
+    }
+
+    @Override
+    public void close()
+    {
+        for (Inflater inflater = this.inflaters.poll(); inflater != null; inflater = this.inflaters.poll()) {
+            inflater.end();
+        }
+    }
+}
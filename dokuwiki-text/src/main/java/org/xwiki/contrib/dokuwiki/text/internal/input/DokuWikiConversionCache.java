@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * Cache of the XWiki 2.1 content converted from DokuWiki content, so that identical revisions of a page are only
+ * converted once. Entries are identified by a hash of the DokuWiki content together with the DokuWiki reference of the
+ * page as relative links are resolved against it. The least recently used entries are evicted when the estimated
+ * memory used by the cached content exceeds the configured budget.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiConversionCache
+{
+    /**
+     * Rough estimate of the memory used by an entry apart from the characters of the converted content and of the
+     * reference: the map entry, the key, the hash and the string headers.
+     */
+    private static final long ENTRY_OVERHEAD = 160;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The key of a cache entry.
+     */
+    public static final class Key
+    {
+        private final byte[] contentHash;
+
+        private final String dokuwikiReference;
+
+        private final int hashCode;
+
+        private Key(byte[] contentHash, String dokuwikiReference)
+        {
+            this.contentHash = contentHash;
+            this.dokuwikiReference = dokuwikiReference;
+            this.hashCode = new HashCodeBuilder().append(contentHash).append(dokuwikiReference).toHashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.dokuwikiReference.equals(other.dokuwikiReference)
+                && Arrays.equals(this.contentHash, other.contentHash);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+    }
+
+    private final long maxSize;
+
+    private final Map<Key, String> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * @param maxSize the maximum estimated memory (in bytes) used by the cached entries
+     */
+    public DokuWikiConversionCache(long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param content the DokuWiki content
+     * @param dokuwikiReference the DokuWiki reference of the page the content belongs to
+     * @return the key identifying the converted content
+     */
+    public static Key createKey(String content, String dokuwikiReference)
+    {
+        return new Key(DigestUtils.sha256(content), dokuwikiReference);
+    }
+
+    /**
+     * @param key the key of the converted content
+     * @return the cached converted content, {@code null} if it isn't cached
+     */
+    public synchronized String get(Key key)
+    {
+        String result = this.entries.get(key);
+
+        if (result != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache converted content and evict the least recently used entries if the cache then exceeds its budget.
+     *
+     * @param key the key of the converted content
+     * @param convertedContent the converted content
+     */
+    public synchronized void put(Key key, String convertedContent)
+    {
+        long entrySize = getSize(key, convertedContent);
+
+        // Don't evict everything for an entry that doesn't fit anyway.
+        if (entrySize <= this.maxSize) {
+            String previous = this.entries.put(key, convertedContent);
+            if (previous != null) {
+                this.size -= getSize(key, previous);
+            }
+            this.size += entrySize;
+
+            Iterator<Map.Entry<Key, String>> iterator = this.entries.entrySet().iterator();
+            while (this.size > this.maxSize) {
+                Map.Entry<Key, String> eldest = iterator.next();
+                this.size -= getSize(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of lookups that found the converted content
+     */
+    public synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of lookups that didn't find the converted content
+     */
+    public synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public synchronized int getEntryCount()
+    {
+        return this.entries.size();
+    }
+
+    private static long getSize(Key key, String convertedContent)
+    {
+        // Assume two bytes per character as the strings might not be stored in the compact Latin-1 representation.
+        return ENTRY_OVERHEAD + 2L * (convertedContent.length() + key.dokuwikiReference.length());
+    }
+}
@@ -24,8 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -34,6 +33,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.MimeTypesProvider;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiLinkResolutionCache.TargetType;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
@@ -58,32 +59,17 @@ import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
  */
 @Component(roles = DokuWikiConverterListener.class)
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
-public class DokuWikiConverterListener extends WrappingListener
+public class DokuWikiConverterListener extends WrappingListener implements MimeTypesProvider
 {
-    private static final Pattern EXTERNAL_URL_PATTERN =
-        Pattern.compile("^([a-z0-9\\-.+]+?)://", Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern EMAIL_ADDRESS_PATTERN = Pattern.compile("^\\S+@\\S+(?:\\?.*)?$");
-
     private static final String NAMESPACE_SEPARATOR = ":";
 
-    // This pattern differs slightly from DokuWiki by making the first group possessive. This is to avoid recursion
-    // and should not change the behavior.
-    private static final Pattern INITIAL_DOT_NORMALIZATION_PATTERN = Pattern.compile("^((\\.+:)*+)(\\.+)(?=[^:.])");
-
-    private static final Pattern SPECIAL_PATTERN = Pattern.compile("[^\\p{L}\\p{N}_:.-]");
-
-    private static final Pattern REPEATED_UNDERSCORE_PATTERN = Pattern.compile("_+");
-
     private static final String QUERY_SEPARATOR = "?";
 
     private static final String DOKUWIKI_NAMESPACE_INDEX = "start";
 
-    private static final String DOT = ".";
-
     private static final String ANCHOR_SEPARATOR = "#";
 
-    private static final String UNDERSCORE = "_";
+    private static final String PAGE_RELATIVE_PREFIX = "~";
 
     @Inject
     private DokuWikiDeaccent deaccent;
@@ -104,12 +90,64 @@ public class DokuWikiConverterListener extends WrappingListener
 
     private String dokuWikiReference;
 
+    private String contextNamespace;
+
+    private DokuWikiLinkResolutionCache linkResolutionCache;
+
+    private DokuWikiLinkTargetScanner linkTargetScanner;
+
+    private DokuWikiReferenceInterner referenceInterner;
+
+    private Map<String, String> mimeTypes;
+
     /**
      * @param dokuWikiReference the DokuWiki reference of the current page
      */
     public void setDokuWikiReference(String dokuWikiReference)
     {
         this.dokuWikiReference = dokuWikiReference;
+
+        if (dokuWikiReference.contains(NAMESPACE_SEPARATOR)) {
+            this.contextNamespace = StringUtils.substringBeforeLast(dokuWikiReference, NAMESPACE_SEPARATOR);
+        } else {
+            this.contextNamespace = "";
+        }
+    }
+
+    /**
+     * @param linkResolutionCache the cache of the resolved link and media targets, {@code null} to resolve each
+     *     target
+     * @since 3.2
+     */
+    public void setLinkResolutionCache(DokuWikiLinkResolutionCache linkResolutionCache)
+    {
+        this.linkResolutionCache = linkResolutionCache;
+    }
+
+    /**
+     * @param referenceInterner the serialized references of the cleaned ids of the import, {@code null} to serialize
+     *     the reference of each link
+     * @since 3.2
+     */
+    public void setReferenceInterner(DokuWikiReferenceInterner referenceInterner)
+    {
+        this.referenceInterner = referenceInterner;
+    }
+
+    /**
+     * @param mimeTypes the mime types of the imported wiki indexed by lower case file extension, {@code null} to use
+     *     the bundled mime types
+     * @since 3.2
+     */
+    public void setMimeTypes(Map<String, String> mimeTypes)
+    {
+        this.mimeTypes = mimeTypes;
+    }
+
+    @Override
+    public Map<String, String> getMimeTypes()
+    {
+        return this.mimeTypes;
     }
 
     @Override
@@ -169,23 +207,29 @@ public class DokuWikiConverterListener extends WrappingListener
 
         if (reference.getType() == ResourceType.URL && !freestanding) {
             String linkTarget = reference.getReference().trim();
-            if (EXTERNAL_URL_PATTERN.matcher(linkTarget).find()) {
-                // External link as defined in DokuWiki.
-                // Just keep the reference as-is as it will be converted to an external link in XWiki automatically.
-                result = reference;
-            } else if (EMAIL_ADDRESS_PATTERN.matcher(linkTarget).find()) {
-                // Mailto link
-                result = new ResourceReference(linkTarget, ResourceType.MAILTO);
-            } else if (StringUtils.isBlank(linkTarget) || linkTarget.startsWith(ANCHOR_SEPARATOR)) {
-                // Link to a section of the current page
-                DocumentResourceReference documentResourceReference = new DocumentResourceReference("");
-                if (linkTarget.length() > 1) {
-                    documentResourceReference.setAnchor(linkTarget.substring(1));
-                }
-                result = documentResourceReference;
-            } else {
-                // Link to a page in the wiki
-                result = resolveDokuWikiReference(linkTarget);
+            switch (getLinkTargetScanner().classify(linkTarget)) {
+                case URL:
+                    // External link as defined in DokuWiki.
+                    // Just keep the reference as-is as it will be converted to an external link in XWiki
+                    // automatically.
+                    result = reference;
+                    break;
+                case EMAIL_ADDRESS:
+                    // Mailto link
+                    result = new ResourceReference(linkTarget, ResourceType.MAILTO);
+                    break;
+                case SECTION:
+                    // Link to a section of the current page
+                    DocumentResourceReference documentResourceReference = new DocumentResourceReference("");
+                    if (linkTarget.length() > 1) {
+                        documentResourceReference.setAnchor(linkTarget.substring(1));
+                    }
+                    result = documentResourceReference;
+                    break;
+                default:
+                    // Link to a page in the wiki
+                    result =
+                        getResolvedReference(TargetType.LINK, linkTarget, this::resolveDokuWikiReference).clone();
             }
         } else if (reference.getType() == ResourceType.ATTACHMENT) {
             result = resolveDokuWikiMediaReferenceToAttachmentReference(reference);
@@ -198,10 +242,52 @@ public class DokuWikiConverterListener extends WrappingListener
 
     private ResourceReference resolveDokuWikiMediaReferenceToAttachmentReference(ResourceReference reference)
     {
-        ResourceReference result;
         String linkTarget = reference.getReference().trim();
+        ResourceReference resolvedReference =
+            getResolvedReference(TargetType.MEDIA, linkTarget, this::resolveDokuWikiMediaReference);
+
+        // Keep the parameters of the original reference.
+        ResourceReference result = reference.clone();
+        result.setReference(resolvedReference.getReference());
+        return result;
+    }
+
+    /**
+     * Resolve a target or get it from the cache, the result must not be modified as it might be cached.
+     */
+    private ResourceReference getResolvedReference(TargetType type, String linkTarget,
+        Function<String, ResourceReference> resolver)
+    {
+        ResourceReference result;
+
+        if (this.linkResolutionCache != null) {
+            // Only targets relative to the page depend on more than the namespace of the page.
+            String context = linkTarget.startsWith(PAGE_RELATIVE_PREFIX) ? this.dokuWikiReference
+                : this.contextNamespace;
+            DokuWikiLinkResolutionCache.Key key = DokuWikiLinkResolutionCache.createKey(type, context, linkTarget);
+            result = this.linkResolutionCache.get(key);
+            if (result == null) {
+                result = resolver.apply(linkTarget);
+                this.linkResolutionCache.put(key, result);
+            }
+        } else {
+            result = resolver.apply(linkTarget);
+        }
+
+        return result;
+    }
+
+    private ResourceReference resolveDokuWikiMediaReference(String linkTarget)
+    {
         String cleanedLinkTarget = resolveAndCleanDokuWikiId(linkTarget);
+        String relativeAttachmentReference = this.referenceInterner != null
+            ? this.referenceInterner.getAttachmentReference(cleanedLinkTarget, this::serializeAttachmentReference)
+            : serializeAttachmentReference(cleanedLinkTarget);
+        return new ResourceReference(relativeAttachmentReference, ResourceType.ATTACHMENT);
+    }
 
+    private String serializeAttachmentReference(String cleanedLinkTarget)
+    {
         // Split into parts again to construct the reference to the page that contains the attachment.
         String[] linkTargetParts = StringUtils.split(cleanedLinkTarget, NAMESPACE_SEPARATOR);
         List<String> linkTargetPartsList = new ArrayList<>(Arrays.asList(linkTargetParts));
@@ -215,10 +301,7 @@ public class DokuWikiConverterListener extends WrappingListener
         DocumentReference documentReference = new DocumentReference(pageReference, new WikiReference("xwiki"));
         AttachmentReference attachmentReference = new AttachmentReference(attachmentName, documentReference);
         String absoluteAttachmentReference = this.serializer.serialize(attachmentReference);
-        String relativeAttachmentReference = StringUtils.removeStart(absoluteAttachmentReference, "xwiki:");
-        result = reference.clone();
-        result.setReference(relativeAttachmentReference);
-        return result;
+        return StringUtils.removeStart(absoluteAttachmentReference, "xwiki:");
     }
 
     private ResourceReference resolveDokuWikiReference(String linkTarget)
@@ -245,90 +328,30 @@ public class DokuWikiConverterListener extends WrappingListener
 
         String cleanedId = resolveAndCleanDokuWikiId(cleanedLinkTarget);
 
-        LocalDocumentReference localDocumentReference = this.referenceConverter.getDocumentReference(cleanedId);
-        result.setReference(this.serializer.serialize(localDocumentReference));
+        result.setReference(this.referenceInterner != null
+            ? this.referenceInterner.getDocumentReference(cleanedId, this::serializeDocumentReference)
+            : serializeDocumentReference(cleanedId));
 
         return result;
     }
 
-    private String resolveAndCleanDokuWikiId(String linkTarget)
+    private String serializeDocumentReference(String cleanedId)
     {
-        // Replace "/" and ";" by ":" in the link target to conform with DokuWiki cleaning.
-        String cleanedLinkTarget = linkTarget.replace('/', ':').replace(';', ':');
-
-        cleanedLinkTarget = resolvePrefix(cleanedLinkTarget);
-
-        List<String> idParts = resolveRelatives(cleanedLinkTarget);
-
-        if (idParts.isEmpty()) {
-            idParts.add(DOKUWIKI_NAMESPACE_INDEX);
-        }
-
-        return idParts.stream()
-            .map(this::cleanIDPart)
-            .filter(StringUtils::isNotBlank)
-            .collect(Collectors.joining(NAMESPACE_SEPARATOR));
+        LocalDocumentReference localDocumentReference = this.referenceConverter.getDocumentReference(cleanedId);
+        return this.serializer.serialize(localDocumentReference);
     }
 
-    private String resolvePrefix(String cleanedLinkTarget)
+    private String resolveAndCleanDokuWikiId(String linkTarget)
     {
-        String id = cleanedLinkTarget;
-        // "~" means relative to the current page.
-        if (id.startsWith("~")) {
-            id = this.dokuWikiReference + NAMESPACE_SEPARATOR + id.substring(1);
-        }
-
-        String contextNamespace;
-        if (this.dokuWikiReference.contains(NAMESPACE_SEPARATOR)) {
-            contextNamespace = StringUtils.substringBeforeLast(this.dokuWikiReference, NAMESPACE_SEPARATOR);
-        } else {
-            contextNamespace = "";
-        }
-
-        if (id.startsWith(DOT)) {
-            // Relative to the current namespace.
-            id = INITIAL_DOT_NORMALIZATION_PATTERN.matcher(id).replaceFirst("$1$3:");
-            id = contextNamespace + NAMESPACE_SEPARATOR + id;
-        }
-
-        // auto-relative to the current namespace.
-        if (!id.contains(NAMESPACE_SEPARATOR)) {
-            id = contextNamespace + NAMESPACE_SEPARATOR + id;
-        }
-
-        return id;
+        return getLinkTargetScanner().normalizeId(linkTarget, this.dokuWikiReference, this.contextNamespace);
     }
 
-    private List<String> resolveRelatives(String id)
+    private DokuWikiLinkTargetScanner getLinkTargetScanner()
     {
-        List<String> result = new ArrayList<>();
-
-        for (String part : id.split(NAMESPACE_SEPARATOR)) {
-            if (part.equals("..")) {
-                if (!result.isEmpty()) {
-                    result.remove(result.size() - 1);
-                }
-            } else if (!part.equals(DOT)) {
-                result.add(part);
-            }
+        if (this.linkTargetScanner == null) {
+            this.linkTargetScanner = new DokuWikiLinkTargetScanner(this.deaccent);
         }
 
-        return result;
-    }
-
-    private String cleanIDPart(String input)
-    {
-        String id = input.trim().toLowerCase();
-
-        // This assumes the default setting, i.e., $conf['deaccent'] = 1 in DokuWiki
-        id = this.deaccent.deaccent(id);
-
-        id = SPECIAL_PATTERN.matcher(id).replaceAll(UNDERSCORE);
-
-        id = REPEATED_UNDERSCORE_PATTERN.matcher(id).replaceAll(UNDERSCORE);
-
-        id = StringUtils.strip(id, ":._-");
-
-        return id;
+        return this.linkTargetScanner;
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The files of a DokuWiki data directory, listed once before the import, such that finding the metadata file and the
+ * revisions of a page don't require any access to the storage. This matters on storage with a high latency like
+ * network shares, and for namespaces with many pages where listing the attic directory for each page would be
+ * quadratic.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiDataInventory
+{
+    private static final Pattern PATTERN_ATTIC_VERSION_EXTENSION = Pattern.compile("\\.\\d+\\.txt(\\.[^.]*)?$");
+
+    private final List<Path> pageFiles;
+
+    private final List<Path> mediaFiles;
+
+    /**
+     * The regular files in the pages, metadata and media directories.
+     */
+    private final Set<Path> files = new HashSet<>();
+
+    /**
+     * The attic files by the page they are revisions of, identified by the attic directory and the file name of the
+     * page without extension.
+     */
+    private final Map<Path, List<Path>> revisionFiles = new HashMap<>();
+
+    /**
+     * @param pageFiles the regular files in the pages directory
+     * @param metaFiles the regular files in the metadata directory
+     * @param atticFiles the regular files in the attic directory
+     * @param mediaFiles the regular files in the media directory
+     */
+    public DokuWikiDataInventory(List<Path> pageFiles, List<Path> metaFiles, List<Path> atticFiles,
+        List<Path> mediaFiles)
+    {
+        this.pageFiles = pageFiles;
+        this.mediaFiles = mediaFiles;
+
+        this.files.addAll(pageFiles);
+        this.files.addAll(metaFiles);
+        this.files.addAll(mediaFiles);
+
+        for (Path atticFile : atticFiles) {
+            String pageName =
+                PATTERN_ATTIC_VERSION_EXTENSION.matcher(atticFile.getFileName().toString()).replaceFirst("");
+            this.revisionFiles.computeIfAbsent(atticFile.resolveSibling(pageName), k -> new ArrayList<>())
+                .add(atticFile);
+        }
+    }
+
+    /**
+     * @return the regular files in the pages directory
+     */
+    public List<Path> getPageFiles()
+    {
+        return this.pageFiles;
+    }
+
+    /**
+     * @return the regular files in the media directory
+     */
+    public List<Path> getMediaFiles()
+    {
+        return this.mediaFiles;
+    }
+
+    /**
+     * @param file a file in the pages, metadata or media directory
+     * @return {@code true} if the file is a regular file
+     */
+    public boolean isRegularFile(Path file)
+    {
+        return this.files.contains(file);
+    }
+
+    /**
+     * @param atticDirectory the attic directory matching the directory of the page
+     * @param pageName the file name of the page without extension
+     * @return the attic files of the page, in the order in which they have been listed
+     */
+    public List<Path> getRevisionFiles(Path atticDirectory, String pageName)
+    {
+        return this.revisionFiles.getOrDefault(atticDirectory.resolve(pageName), Collections.emptyList());
+    }
+}
@@ -21,7 +21,6 @@ package org.xwiki.contrib.dokuwiki.text.internal.input;
 
 import javax.inject.Singleton;
 
-import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 
 /**
@@ -71,20 +70,35 @@ public class DokuWikiDeaccent
 
     private static final String Z = "z";
 
+    /**
+     * The highest character that is never replaced, i.e., the highest ASCII character.
+     */
+    private static final char MAX_ASCII = 0x7F;
+
     // Strings copied from
     // https://github.com/dokuwiki/dokuwiki/blob/a178f5e035771d/inc/Utf8/tables/loweraccents.php
     // for compatibility with DokuWiki.
-    private final String[] searches = new String[]{"á", "à", "ă", "â", "å", "ä", "ã", "ą", "ā", "æ", "ḃ", "ć", "ĉ",
-        "č", "ċ", "ç", "ď", "ḋ", "đ", "ð", "é", "è", "ĕ", "ê", "ě", "ë", "ė", "ę", "ē", "ḟ", "ƒ", "ğ", "ĝ", "ġ", "ģ",
-        "ĥ", "ħ", "í", "ì", "î", "ï", "ĩ", "į", "ī", "ı", "ĵ", "ķ", "ĺ", "ľ", "ļ", "ł", "ṁ", "ń", "ň", "ñ", "ņ", "ó",
-        "ò", "ô", "ö", "ő", "õ", "ø", "ō", "ơ", "ṗ", "ŕ", "ř", "ŗ", "ś", "ŝ", "š", "ṡ", "ş", "ș", "ß", "ť", "ṫ", "ţ",
-        "ț", "ŧ", "ú", "ù", "ŭ", "û", "ů", "ü", "ű", "ũ", "ų", "ū", "ư", "ẃ", "ẁ", "ŵ", "ẅ", "ý", "ỳ", "ŷ", "ÿ", "ź",
-        "ž", "ż", "þ", "µ"};
-
-    private final String[] replacements = new String[]{ A, A, A, A, A, AE, A, A, A, AE, "b", C, C, C, C, C, D, D, D,
-        "dh", E, E, E, E, E, E, E, E, E, F, F, G, G, G, G, H, H, I, I, I, I, I, I, I, I, "j", "k", L, L, L, L, "m", N,
-        N, N, N, O, O, O, "oe", O, O, O, O, O, "p", R, R, R, S, S, S, S, S, S, "ss", T, T, T, T, T, U, U, U, U, U, "ue",
-        U, U, U, U, U, W, W, W, W, Y, Y, Y, Y, Z, Z, Z, "th", U };
+    private static final String[] SEARCHES = {
+        "á", "à", "ă", "â", "å", "ä", "ã", "ą", "ā", "æ", "ḃ", "ć", "ĉ", "č", "ċ", "ç", "ď", "ḋ", "đ", "ð", "é", "è",
+        "ĕ", "ê", "ě", "ë", "ė", "ę", "ē", "ḟ", "ƒ", "ğ", "ĝ", "ġ", "ģ", "ĥ", "ħ", "í", "ì", "î", "ï", "ĩ", "į", "ī",
+        "ı", "ĵ", "ķ", "ĺ", "ľ", "ļ", "ł", "ṁ", "ń", "ň", "ñ", "ņ", "ó", "ò", "ô", "ö", "ő", "õ", "ø", "ō", "ơ", "ṗ",
+        "ŕ", "ř", "ŗ", "ś", "ŝ", "š", "ṡ", "ş", "ș", "ß", "ť", "ṫ", "ţ", "ț", "ŧ", "ú", "ù", "ŭ", "û", "ů", "ü", "ű",
+        "ũ", "ų", "ū", "ư", "ẃ", "ẁ", "ŵ", "ẅ", "ý", "ỳ", "ŷ", "ÿ", "ź", "ž", "ż", "þ", "µ"
+    };
+
+    private static final String[] REPLACEMENTS = {
+        A, A, A, A, A, AE, A, A, A, AE, "b", C, C, C, C, C, D, D, D, "dh", E, E, E, E, E, E, E, E, E, F, F, G, G, G, G,
+        H, H, I, I, I, I, I, I, I, I, "j", "k", L, L, L, L, "m", N, N, N, N, O, O, O, "oe", O, O, O, O, O, "p", R, R, R,
+        S, S, S, S, S, S, "ss", T, T, T, T, T, U, U, U, U, U, "ue", U, U, U, U, U, W, W, W, W, Y, Y, Y, Y, Z, Z, Z,
+        "th", U
+    };
+
+    /**
+     * The replacement of each character indexed by the character, up to the highest character that is replaced. All
+     * searched strings are single characters, so replacing them one character after another gives the same result as
+     * DokuWiki.
+     */
+    private static final String[] TABLE = createTable();
 
     /**
      * Deaccent a string.
@@ -94,6 +108,63 @@ public class DokuWikiDeaccent
      */
     public String deaccent(String string)
     {
-        return StringUtils.replaceEach(string, searches, replacements);
+        if (string == null) {
+            return null;
+        }
+
+        // Most ids only consist of ASCII characters, which are never replaced.
+        int length = string.length();
+        int index = 0;
+        while (index < length && string.charAt(index) <= MAX_ASCII) {
+            index++;
+        }
+        if (index == length) {
+            return string;
+        }
+
+        StringBuilder builder = new StringBuilder(length + length / 2);
+        builder.append(string, 0, index);
+        for (; index < length; index++) {
+            char c = string.charAt(index);
+            String replacement = c < TABLE.length ? TABLE[c] : null;
+            if (replacement != null) {
+                builder.append(replacement);
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return the searched strings of the DokuWiki table of lower case accents, in the order of the table
+     */
+    static String[] getSearches()
+    {
+        return SEARCHES.clone();
+    }
+
+    /**
+     * @return the replacements of the DokuWiki table of lower case accents, in the order of the table
+     */
+    static String[] getReplacements()
+    {
+        return REPLACEMENTS.clone();
+    }
+
+    private static String[] createTable()
+    {
+        char maxChar = 0;
+        for (String search : SEARCHES) {
+            maxChar = (char) Math.max(maxChar, search.charAt(0));
+        }
+
+        String[] table = new String[maxChar + 1];
+        for (int i = 0; i < SEARCHES.length; i++) {
+            table[SEARCHES[i].charAt(0)] = REPLACEMENTS[i];
+        }
+
+        return table;
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lists the regular files below a directory by listing the directories in parallel. On storage with a high latency
+ * like network shares, listing a directory mostly waits for the storage, so many directories are listed at the same
+ * time. The files are returned in the same order as {@link Files#walk(Path, java.nio.file.FileVisitOption...)} visits
+ * them, such that anything that depends on the order, like conflicts between pages, is resolved the same way.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiDirectoryWalker implements AutoCloseable
+{
+    /**
+     * Listing directories mostly waits for the storage, so use more threads than there are processors.
+     */
+    private static final int THREADS_PER_PROCESSOR = 4;
+
+    private final ForkJoinPool pool =
+        new ForkJoinPool(THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+
+    private final LongAdder entryCount = new LongAdder();
+
+    /**
+     * Lists one directory and the directories below it, the subdirectories are listed in parallel.
+     */
+    private final class ListDirectoryTask extends RecursiveTask<List<Path>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path directory;
+
+        ListDirectoryTask(Path directory)
+        {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<Path> compute()
+        {
+            // The entries of the directory in listing order, each either a regular file or the task listing a
+            // subdirectory.
+            List<Object> entries = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (Path entry : stream) {
+                    entryCount.increment();
+
+                    // Like Files#walk, don't follow links to directories but keep links to regular files.
+                    BasicFileAttributes attributes =
+                        Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        ListDirectoryTask task = new ListDirectoryTask(entry);
+                        task.fork();
+                        entries.add(task);
+                    } else if (attributes.isRegularFile()
+                        || (attributes.isSymbolicLink() && Files.isRegularFile(entry))) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            List<Path> files = new ArrayList<>();
+            for (Object entry : entries) {
+                if (entry instanceof ListDirectoryTask) {
+                    files.addAll(((ListDirectoryTask) entry).join());
+                } else {
+                    files.add((Path) entry);
+                }
+            }
+
+            return files;
+        }
+    }
+
+    /**
+     * @param directory the directory to list
+     * @return the regular files below the directory, in the order in which {@link Files#walk(Path,
+     *     java.nio.file.FileVisitOption...)} visits them
+     * @throws IOException if a directory cannot be listed
+     */
+    public List<Path> walk(Path directory) throws IOException
+    {
+        try {
+            return this.pool.invoke(new ListDirectoryTask(directory));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the number of files and directories that have been listed
+     */
+    public long getEntryCount()
+    {
+        return this.entryCount.sum();
+    }
+
+    @Override
+    public void close()
+    {
+        this.pool.shutdownNow();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiBlockSplitter;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiBlockSplitter.BlockGroups;
+import org.xwiki.rendering.parser.ParseException;
+
+/**
+ * Converts the consecutive revisions of a page by only converting the groups of blocks that changed since the
+ * previous revision and reusing the converted content of all other groups.
+ * <p>
+ * Each group is converted after a placeholder paragraph, which makes the XWiki 2.1 renderer output the separator
+ * that it would output between the previous group and this group in the whole content. The converted groups can
+ * thus simply be concatenated. Only the first group needs to be converted without that separator; this is the case
+ * when the converted content of the first group starts with the separator as there is nothing else the placeholder
+ * could have an influence on. Otherwise, e.g., when the content starts with text that isn't part of a block, or when
+ * a group can't be converted after the placeholder, the whole content is converted.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiIncrementalConverter
+{
+    private static final String PLACEHOLDER = "x";
+
+    private static final String PLACEHOLDER_BLOCK = PLACEHOLDER + "\n\n";
+
+    private static final String BLOCK_SEPARATOR = "\n\n";
+
+    /**
+     * Converts DokuWiki content to XWiki 2.1 content.
+     */
+    @FunctionalInterface
+    public interface ContentConverter
+    {
+        /**
+         * @param content the DokuWiki content
+         * @return the XWiki 2.1 content
+         * @throws ParseException if the content cannot be parsed
+         */
+        String convert(String content) throws ParseException;
+    }
+
+    private final DokuWikiBlockSplitter blockSplitter;
+
+    private final ContentConverter converter;
+
+    private BlockGroups previousGroups;
+
+    private Map<String, String> previousConvertedGroups = Collections.emptyMap();
+
+    private int convertedGroupCount;
+
+    private int reusedGroupCount;
+
+    /**
+     * @param blockSplitter the splitter used to find the groups of blocks of each revision
+     * @param converter the converter of the groups of blocks, or of whole revisions
+     */
+    public DokuWikiIncrementalConverter(DokuWikiBlockSplitter blockSplitter, ContentConverter converter)
+    {
+        this.blockSplitter = blockSplitter;
+        this.converter = converter;
+    }
+
+    /**
+     * Convert the next revision of the page. Only the converted groups of blocks of this revision are kept for the
+     * next revision.
+     *
+     * @param content the DokuWiki content of the revision
+     * @return the XWiki 2.1 content, identical to the result of converting the whole content
+     * @throws ParseException if the content cannot be parsed
+     */
+    public String convert(String content) throws ParseException
+    {
+        BlockGroups groups = this.blockSplitter.split(content, this.previousGroups);
+        Map<String, String> convertedGroups = new HashMap<>();
+
+        String result;
+        try {
+            result = convertGroups(groups, convertedGroups);
+        } catch (ParseException e) {
+            // A group couldn't be converted separately, the whole content might still be.
+            result = null;
+        }
+
+        if (result == null) {
+            result = this.converter.convert(content);
+        }
+
+        this.previousGroups = groups;
+        this.previousConvertedGroups = convertedGroups;
+
+        return result;
+    }
+
+    /**
+     * Take into account a revision of the page that has been converted without this converter, e.g., because its
+     * converted content was cached, so that the next revision is split based on this revision. The converted groups of
+     * blocks are kept as they are identified by their content and thus remain valid.
+     *
+     * @param content the DokuWiki content of the revision
+     */
+    public void skip(String content)
+    {
+        this.previousGroups = this.blockSplitter.split(content, this.previousGroups);
+    }
+
+    /**
+     * @return the number of groups of blocks that have been converted
+     */
+    public int getConvertedGroupCount()
+    {
+        return this.convertedGroupCount;
+    }
+
+    /**
+     * @return the number of groups of blocks whose converted content has been reused from the previous revision
+     */
+    public int getReusedGroupCount()
+    {
+        return this.reusedGroupCount;
+    }
+
+    /**
+     * @return the concatenated converted groups, {@code null} if the content needs to be converted as a whole
+     */
+    private String convertGroups(BlockGroups groups, Map<String, String> convertedGroups) throws ParseException
+    {
+        // Groups that only consist of empty lines don't produce any output, merge them with the next group.
+        String first = "";
+        int index = 0;
+        StringBuilder firstGroup = new StringBuilder();
+        while (index < groups.size() && first.isEmpty()) {
+            firstGroup.append(groups.get(index++));
+            first = convertGroup(firstGroup.toString(), convertedGroups);
+        }
+
+        if (!first.startsWith(BLOCK_SEPARATOR)) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder(groups.getContent().length());
+        builder.append(first, BLOCK_SEPARATOR.length(), first.length());
+        for (; index < groups.size(); index++) {
+            builder.append(convertGroup(groups.get(index), convertedGroups));
+        }
+
+        return builder.toString();
+    }
+
+    private String convertGroup(String group, Map<String, String> convertedGroups) throws ParseException
+    {
+        String result = convertedGroups.get(group);
+
+        if (result == null) {
+            result = this.previousConvertedGroups.get(group);
+
+            if (result != null) {
+                this.reusedGroupCount++;
+            } else {
+                String converted = this.converter.convert(PLACEHOLDER_BLOCK + group);
+                if (!converted.startsWith(PLACEHOLDER)) {
+                    throw new ParseException("Unexpected conversion of the placeholder paragraph: " + converted);
+                }
+                result = converted.substring(PLACEHOLDER.length());
+                this.convertedGroupCount++;
+            }
+
+            convertedGroups.put(group, result);
+        }
+
+        return result;
+    }
+}
@@ -23,24 +23,33 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -53,16 +62,21 @@ import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.function.IOSupplier;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiBlockSplitter;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.MimeTypeDetector;
 import org.xwiki.contrib.dokuwiki.text.input.DokuWikiInputProperties;
 import org.xwiki.contrib.dokuwiki.text.internal.DokuWikiFilter;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiPageChanges.Change;
 import org.xwiki.filter.FilterEventParameters;
 import org.xwiki.filter.FilterException;
 import org.xwiki.filter.event.model.WikiDocumentFilter;
@@ -79,9 +93,6 @@ import org.xwiki.rendering.renderer.PrintRenderer;
 import org.xwiki.rendering.renderer.PrintRendererFactory;
 import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
 
-import de.ailis.pherialize.MixedArray;
-import de.ailis.pherialize.Pherialize;
-
 /**
  * @version $Id: 41df1dab66b03111214dbec56fee8dbd44747638 $
  */
@@ -114,17 +125,40 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
 
     private static final String KEY_MEDIA_FOLDER = "media";
 
+    private static final String KEY_META_FOLDER = "meta";
+
     private static final String KEY_PERSISTENT = "persistent";
 
     private static final String KEY_LAST_CHANGE = "last_change";
 
     private static final String KEY_USER = "user";
 
+    private static final String KEY_CONF_FOLDER = "conf";
+
+    /**
+     * The configuration files of the mime types, the local one overrides the mime types of the default one.
+     */
+    private static final List<String> MIME_CONFIGURATION_FILES = List.of("mime.conf", "mime.local.conf");
+
     private static final String DOKUWIKI_START_PAGE = "start";
 
+    /**
+     * The time (in seconds) to wait for the running conversions to stop at the end of the import.
+     */
+    private static final long CONVERSION_TERMINATION_TIMEOUT = 60;
+
+    /**
+     * The number of pages in flight per processor when the maximum hasn't been set.
+     */
+    private static final int PAGES_IN_FLIGHT_PER_PROCESSOR = 2;
+
     private static final Pattern PATTERN_ATTIC_EXTENSION = Pattern.compile("\\.txt(\\.[^.]*)?$");
 
-    private static final Pattern PATTERN_ATTIC_VERSION_EXTENSION = Pattern.compile("\\.\\d+\\.txt(\\.[^.]*)?$");
+    /**
+     * Reads the imported metadata, from the current and the persistent metadata and from the top level for metadata
+     * that has been written before 2006-11-06.
+     */
+    private static final DokuWikiMetadataReader METADATA_READER = createMetadataReader();
 
     @Inject
     @Named("xwiki/2.1")
@@ -140,9 +174,54 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
     @Inject
     private DokuWikiReferenceConverter dokuWikiReferenceConverter;
 
+    @Inject
+    private DokuWikiBlockSplitter blockSplitter;
+
     @Inject
     private Logger logger;
 
+    private DokuWikiConversionCache conversionCache;
+
+    private DokuWikiLinkResolutionCache linkResolutionCache;
+
+    private DokuWikiReferenceInterner referenceInterner;
+
+    /**
+     * The mime types of the imported wiki indexed by lower case file extension, {@code null} to use the bundled ones.
+     */
+    private Map<String, String> mimeTypes;
+
+    /**
+     * The thread pool used to convert pages and revisions in parallel, {@code null} if everything is converted in the
+     * current thread.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The revisions that may still be converted ahead of the revisions that are being sent, shared by all pages.
+     */
+    private Semaphore revisionPermits;
+
+    /**
+     * The maximum number of pages in flight, resolved from the input properties.
+     */
+    private int maxPagesInFlight;
+
+    /**
+     * The thread pool used to read the files of the upcoming pages, {@code null} if the files are read when a page is
+     * converted.
+     */
+    private ExecutorService prefetchExecutor;
+
+    /**
+     * The total time (in nanoseconds) the conversions waited for the files of the pages.
+     */
+    private final LongAdder fileWaitTime = new LongAdder();
+
+    private DokuWikiDataInventory inventory;
+
+    private DokuWikiAtticDecoder atticDecoder;
+
     private static class DokuWikiPageItem
     {
         private final String dokuwikiReference;
@@ -174,6 +253,367 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
         }
     }
 
+    /**
+     * The files of a page, which are read in the background ahead of the conversion of the page when prefetching is
+     * enabled.
+     */
+    private final class PageFiles
+    {
+        private final DokuWikiPageItem pageItem;
+
+        private final String fileNameWithoutExtension;
+
+        private final Path metaFile;
+
+        private final Path changesFile;
+
+        private final Path atticDirectory;
+
+        private Future<byte[]> content;
+
+        private Future<byte[]> metadata;
+
+        PageFiles(DokuWikiPageItem pageItem, Path dokuwikiDataDirectory)
+        {
+            this.pageItem = pageItem;
+
+            Path file = pageItem.getPageFile();
+
+            // Extract the filename without the file extension.
+            this.fileNameWithoutExtension = getFileNameWithoutTxtExtension(file);
+
+            // Extract path below the data directory and replace the pages directory with the meta directory.
+            Path metaSubDirectory = getMatchingDirectory(file.getParent(), dokuwikiDataDirectory, KEY_META_FOLDER);
+            this.metaFile = metaSubDirectory.resolve(this.fileNameWithoutExtension + ".meta");
+            this.changesFile = metaSubDirectory.resolve(this.fileNameWithoutExtension + ".changes");
+
+            this.atticDirectory = getMatchingDirectory(file.getParent(), dokuwikiDataDirectory, KEY_ATTIC_FOLDER);
+        }
+
+        /**
+         * Start reading the files in the background.
+         */
+        void prefetch()
+        {
+            this.content = prefetchExecutor.submit(this::readContent);
+            this.metadata = prefetchExecutor.submit(this::readMetadata);
+        }
+
+        /**
+         * @return the content of the page file, {@code null} if the page only exists for storing attachments
+         */
+        byte[] getContent() throws IOException
+        {
+            return getPageFile(this.content, this::readContent);
+        }
+
+        /**
+         * @return the content of the metadata file, {@code null} if there is no metadata file
+         */
+        byte[] getMetadata() throws IOException
+        {
+            return getPageFile(this.metadata, this::readMetadata);
+        }
+
+        /**
+         * @return the attic files of the page in no particular order
+         */
+        List<Path> getRevisionFiles()
+        {
+            return inventory.getRevisionFiles(this.atticDirectory, this.fileNameWithoutExtension);
+        }
+
+        /**
+         * @return the changes logged for the revisions of the page, {@code null} if there is no changes file
+         */
+        DokuWikiPageChanges getChanges() throws IOException
+        {
+            return inventory.isRegularFile(this.changesFile) ? DokuWikiPageChanges.read(this.changesFile) : null;
+        }
+
+        private byte[] readContent() throws IOException
+        {
+            Path file = this.pageItem.getPageFile();
+            return inventory.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        }
+
+        private byte[] readMetadata() throws IOException
+        {
+            return inventory.isRegularFile(this.metaFile) ? Files.readAllBytes(this.metaFile) : null;
+        }
+    }
+
+    /**
+     * Provides the files of the pages in sorted order and prefetches the files of the next pages.
+     */
+    private final class PageFilesPrefetcher
+    {
+        private final List<Map.Entry<LocalDocumentReference, DokuWikiPageItem>> sortedPages;
+
+        private final Path dokuwikiDataDirectory;
+
+        /**
+         * The files of the next pages, the head is the next page.
+         */
+        private final Deque<PageFiles> nextPages = new ArrayDeque<>();
+
+        private int nextPage;
+
+        PageFilesPrefetcher(List<Map.Entry<LocalDocumentReference, DokuWikiPageItem>> sortedPages,
+            Path dokuwikiDataDirectory)
+        {
+            this.sortedPages = sortedPages;
+            this.dokuwikiDataDirectory = dokuwikiDataDirectory;
+        }
+
+        /**
+         * @return the files of the next page
+         */
+        PageFiles next()
+        {
+            int depth = prefetchExecutor != null ? properties.getPagePrefetchDepth() : 0;
+            while (this.nextPage < this.sortedPages.size() && this.nextPages.size() <= depth) {
+                PageFiles pageFiles =
+                    new PageFiles(this.sortedPages.get(this.nextPage++).getValue(), this.dokuwikiDataDirectory);
+                if (prefetchExecutor != null) {
+                    pageFiles.prefetch();
+                }
+                this.nextPages.add(pageFiles);
+            }
+
+            return this.nextPages.remove();
+        }
+    }
+
+    /**
+     * The metadata and the converted content of a page, ready to be sent to the filter.
+     */
+    private static class ConvertedDocument
+    {
+        private final FilterEventParameters documentLocaleParameters = new FilterEventParameters();
+
+        /**
+         * The revisions in ascending order, {@code null} if the page has no revisions.
+         */
+        private PageRevisions revisions;
+
+        private boolean contentFailed;
+    }
+
+    private static class ConvertedRevision
+    {
+        private final String revision;
+
+        private final String content;
+
+        /**
+         * The change that created the revision, {@code null} if it hasn't been logged.
+         */
+        private final Change change;
+
+        ConvertedRevision(String revision, String content, Change change)
+        {
+            this.revision = revision;
+            this.content = content;
+            this.change = change;
+        }
+    }
+
+    /**
+     * A batch of revisions that is converted by the thread pool.
+     */
+    private static class PendingBatch
+    {
+        private final Future<List<ConvertedRevision>> conversion;
+
+        /**
+         * The number of revisions in flight that the batch holds.
+         */
+        private final int permits;
+
+        PendingBatch(Future<List<ConvertedRevision>> conversion, int permits)
+        {
+            this.conversion = conversion;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * The attic revisions of a page, converted in batches of consecutive revisions. The batches are converted by the
+     * thread pool ahead of the revisions that are being sent, as long as the number of revisions in flight of all
+     * pages stays below the limit. A batch that couldn't be converted ahead is converted when it is requested. When
+     * several batches of a page are in flight, each batch has its own incremental converter such that the batches can
+     * be converted in parallel, otherwise all batches share the same converter.
+     */
+    private final class PageRevisions
+    {
+        private final DokuWikiPageItem pageItem;
+
+        private final String fileNameWithoutExtension;
+
+        private final List<Path> files;
+
+        private final DokuWikiPageChanges changes;
+
+        private final int batchSize;
+
+        private final int maxBatchesInFlight;
+
+        /**
+         * The conversions of the batches in ascending order, the head is the next batch to send.
+         */
+        private final Deque<PendingBatch> pendingBatches = new ArrayDeque<>();
+
+        /**
+         * {@code true} if the batches are converted one after another, with the same incremental converter.
+         */
+        private final boolean sequential;
+
+        /**
+         * The converter of all batches when they are converted one after another.
+         */
+        private DokuWikiIncrementalConverter sequentialConverter;
+
+        private int nextBatchStart;
+
+        PageRevisions(DokuWikiPageItem pageItem, String fileNameWithoutExtension, List<Path> files,
+            DokuWikiPageChanges changes)
+        {
+            this.pageItem = pageItem;
+            this.fileNameWithoutExtension = fileNameWithoutExtension;
+            this.files = files;
+            this.changes = changes;
+
+            if (DokuWikiInputFilterStream.this.executor != null) {
+                // Convert about one batch per processor such that the revisions of a single page keep all processors
+                // busy, while the batches are as long as possible to reuse many converted groups of blocks.
+                int maxRevisionsInFlight =
+                    Math.max(1, DokuWikiInputFilterStream.this.properties.getMaxRevisionsInFlight());
+                this.batchSize = Math.max(1, maxRevisionsInFlight / Runtime.getRuntime().availableProcessors());
+                this.maxBatchesInFlight = maxRevisionsInFlight / this.batchSize;
+            } else {
+                this.batchSize = 1;
+                this.maxBatchesInFlight = 0;
+            }
+
+            this.sequential = this.maxBatchesInFlight <= 1;
+            if (this.sequential) {
+                this.sequentialConverter = createIncrementalConverter();
+            }
+        }
+
+        /**
+         * Start the conversion of the first batches.
+         */
+        void start()
+        {
+            submitBatches();
+        }
+
+        /**
+         * @return the converted revisions of the next batch, {@code null} if all revisions have been returned
+         */
+        List<ConvertedRevision> nextBatch() throws FilterException
+        {
+            List<ConvertedRevision> revisions;
+            PendingBatch batch = this.pendingBatches.poll();
+            if (batch != null) {
+                try {
+                    revisions = getConversionResult(batch.conversion,
+                        "the revisions of page [" + this.pageItem.getPageFile() + "]");
+                } finally {
+                    DokuWikiInputFilterStream.this.revisionPermits.release(batch.permits);
+                }
+            } else if (this.nextBatchStart < this.files.size()) {
+                // The batch couldn't be converted ahead, and it's needed now.
+                int start = this.nextBatchStart;
+                this.nextBatchStart = getBatchEnd(start);
+                revisions = convertBatch(start, this.nextBatchStart);
+            } else {
+                return null;
+            }
+
+            // Keep converting while the events of this batch are sent.
+            submitBatches();
+
+            return revisions;
+        }
+
+        private void submitBatches()
+        {
+            while (this.nextBatchStart < this.files.size() && this.pendingBatches.size() < this.maxBatchesInFlight) {
+                int start = this.nextBatchStart;
+                int end = getBatchEnd(start);
+                // Never wait for permits as the revisions that hold them might only be sent after this page.
+                if (!DokuWikiInputFilterStream.this.revisionPermits.tryAcquire(end - start)) {
+                    break;
+                }
+                Future<List<ConvertedRevision>> conversion =
+                    DokuWikiInputFilterStream.this.executor.submit(() -> convertBatch(start, end));
+                this.pendingBatches.add(new PendingBatch(conversion, end - start));
+                this.nextBatchStart = end;
+            }
+        }
+
+        private int getBatchEnd(int start)
+        {
+            return Math.min(start + this.batchSize, this.files.size());
+        }
+
+        private List<ConvertedRevision> convertBatch(int start, int end)
+        {
+            DokuWikiIncrementalConverter incrementalConverter =
+                this.sequential ? this.sequentialConverter : createIncrementalConverter();
+            List<ConvertedRevision> revisions = convertRevisions(start, end, incrementalConverter);
+            if (!this.sequential || end == this.files.size()) {
+                logIncrementalConversion(incrementalConverter);
+            }
+
+            return revisions;
+        }
+
+        private DokuWikiIncrementalConverter createIncrementalConverter()
+        {
+            // Consecutive revisions usually only differ in a few blocks.
+            String dokuwikiReference = this.pageItem.getDokuWikiReference();
+            return DokuWikiInputFilterStream.this.properties.isIncrementalConversion()
+                ? new DokuWikiIncrementalConverter(DokuWikiInputFilterStream.this.blockSplitter,
+                    content -> convertContent(content, dokuwikiReference))
+                : null;
+        }
+
+        private List<ConvertedRevision> convertRevisions(int start, int end,
+            DokuWikiIncrementalConverter incrementalConverter)
+        {
+            List<ConvertedRevision> revisions = new ArrayList<>(end - start);
+
+            for (Path file : this.files.subList(start, end)) {
+                try {
+                    long revision = extractRevision(this.fileNameWithoutExtension, file);
+                    String documentContent = DokuWikiInputFilterStream.this.atticDecoder.decode(file);
+                    String convertedContent =
+                        parseContent(documentContent, this.pageItem.getDokuWikiReference(), incrementalConverter);
+                    Change change = this.changes != null ? this.changes.get(revision) : null;
+                    revisions.add(new ConvertedRevision(String.valueOf(revision), convertedContent, change));
+                } catch (Exception e) {
+                    DokuWikiInputFilterStream.this.logger.error("Failed to parse file [{}]", file, e);
+                }
+            }
+
+            return revisions;
+        }
+
+        private void logIncrementalConversion(DokuWikiIncrementalConverter incrementalConverter)
+        {
+            if (incrementalConverter != null) {
+                DokuWikiInputFilterStream.this.logger.debug(
+                    "Converted [{}] and reused [{}] groups of blocks of the revisions of page [{}]",
+                    incrementalConverter.getConvertedGroupCount(), incrementalConverter.getReusedGroupCount(),
+                    this.pageItem.getDokuWikiReference());
+            }
+        }
+    }
+
     @Override
     protected void read(Object filter, DokuWikiFilter proxyFilter) throws FilterException
     {
@@ -276,16 +716,27 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
 
     private void readAllDocuments(DokuWikiFilter proxyFilter, File dokuwikiDataDirectory) throws FilterException
     {
-        Map<LocalDocumentReference, DokuWikiPageItem> pages;
+        if (this.properties.getConversionCacheSize() > 0) {
+            this.conversionCache = new DokuWikiConversionCache(this.properties.getConversionCacheSize());
+        }
+        if (this.properties.getLinkResolutionCacheSize() > 0) {
+            this.linkResolutionCache = new DokuWikiLinkResolutionCache(this.properties.getLinkResolutionCacheSize());
+        }
+        this.referenceInterner = new DokuWikiReferenceInterner();
 
-        try {
-            pages = readDocumentMap(dokuwikiDataDirectory.toPath().resolve(KEY_PAGES_DIRECTORY));
-        } catch (IOException e) {
-            // This shouldn't happen as this is really just recursively scanning a directory and would thus indicate
-            // a major problem.
-            throw new FilterException("Failed to read page list", e);
+        try (DokuWikiDirectoryWalker walker = new DokuWikiDirectoryWalker()) {
+            long start = System.nanoTime();
+
+            this.inventory = readInventory(dokuwikiDataDirectory.toPath(), walker);
+
+            long scanTime = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            this.logger.info("Scanned [{}] files and directories in [{}] ms ([{}] entries per second)",
+                walker.getEntryCount(), scanTime, walker.getEntryCount() * TimeUnit.SECONDS.toMillis(1) / scanTime);
         }
 
+        Map<LocalDocumentReference, DokuWikiPageItem> pages =
+            readDocumentMap(dokuwikiDataDirectory.toPath().resolve(KEY_PAGES_DIRECTORY));
+
         Map<LocalDocumentReference, DokuWikiPageItem> attachments =
             readAttachmentMap(dokuwikiDataDirectory.toPath().resolve(KEY_MEDIA_FOLDER));
         attachments.forEach((page, attachmentPageItem) ->
@@ -306,15 +757,143 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
                 .sorted(Comparator.comparing(e -> e.getValue().getDokuWikiReference()))
                 .collect(Collectors.toList());
 
+        this.maxPagesInFlight = this.properties.getMaxPagesInFlight();
+        if (this.maxPagesInFlight == 0) {
+            this.maxPagesInFlight = PAGES_IN_FLIGHT_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        }
+
+        if (this.maxPagesInFlight > 1 || this.properties.getMaxRevisionsInFlight() > 1) {
+            this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new BasicThreadFactory.Builder().namingPattern("DokuWiki conversion %d").daemon(true).build());
+        }
+
+        if (this.properties.getPagePrefetchDepth() > 0) {
+            // Reading files mostly waits for the storage, so use more threads than there are processors.
+            this.prefetchExecutor = Executors.newFixedThreadPool(this.properties.getPagePrefetchDepth(),
+                new BasicThreadFactory.Builder().namingPattern("DokuWiki prefetch %d").daemon(true).build());
+        }
+
+        this.revisionPermits = new Semaphore(Math.max(1, this.properties.getMaxRevisionsInFlight()));
+        this.fileWaitTime.reset();
+        this.atticDecoder = new DokuWikiAtticDecoder();
+
+        // Classify the media like the imported wiki does.
+        this.mimeTypes = readMimeTypes(new File(dokuwikiDataDirectory.getParentFile(), KEY_CONF_FOLDER));
+
+        try {
+            PageFilesPrefetcher prefetcher = new PageFilesPrefetcher(sortedPages, dokuwikiDataDirectory.toPath());
+            if (this.maxPagesInFlight > 1) {
+                readDocumentsInParallel(sortedPages, prefetcher, proxyFilter);
+            } else {
+                for (Map.Entry<LocalDocumentReference, DokuWikiPageItem> page : sortedPages) {
+                    readDocument(page.getKey(), prefetcher.next(), proxyFilter);
+                }
+            }
+        } finally {
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+            }
+            if (this.prefetchExecutor != null) {
+                this.prefetchExecutor.shutdownNow();
+                this.prefetchExecutor = null;
+            }
+            closeAtticDecoder();
+            this.executor = null;
+        }
+
+        this.logger.info("Waited [{}] ms for reading page files with a prefetch depth of [{}] pages",
+            TimeUnit.NANOSECONDS.toMillis(this.fileWaitTime.sum()), this.properties.getPagePrefetchDepth());
+
+        if (this.conversionCache != null) {
+            this.logger.info("Conversion cache: [{}] hits, [{}] misses, [{}] cached pages",
+                this.conversionCache.getHits(), this.conversionCache.getMisses(),
+                this.conversionCache.getEntryCount());
+        }
+
+        if (this.linkResolutionCache != null) {
+            this.logger.info("Link resolution cache: [{}] hits, [{}] misses ([{}]% hit rate), [{}] cached targets",
+                this.linkResolutionCache.getHits(), this.linkResolutionCache.getMisses(),
+                Math.round(100 * this.linkResolutionCache.getHitRate()), this.linkResolutionCache.getEntryCount());
+        }
+        this.logger.debug("Serialized the references of [{}] linked pages and media files",
+            this.referenceInterner.getEntryCount());
+    }
+
+    /**
+     * Wait for the conversions to stop before ending the pooled inflaters of the attic decoder.
+     */
+    private void closeAtticDecoder()
+    {
+        try {
+            // The conversions that are still running after a failure might still use the decoder.
+            if (this.executor == null
+                || this.executor.awaitTermination(CONVERSION_TERMINATION_TIMEOUT, TimeUnit.SECONDS)) {
+                this.atticDecoder.close();
+            } else {
+                this.logger.warn("The conversions didn't stop within [{}] seconds, not closing the attic decoder",
+                    CONVERSION_TERMINATION_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Convert the upcoming pages in a thread pool while the events of the converted pages are sent in order from the
+     * current thread.
+     */
+    private void readDocumentsInParallel(List<Map.Entry<LocalDocumentReference, DokuWikiPageItem>> sortedPages,
+        PageFilesPrefetcher prefetcher, DokuWikiFilter proxyFilter) throws FilterException
+    {
+        // The conversions of the pages in sorted order, the head is the next page to send.
+        Deque<Future<ConvertedDocument>> pendingPages = new ArrayDeque<>(this.maxPagesInFlight);
+        int nextPage = 0;
+
         for (Map.Entry<LocalDocumentReference, DokuWikiPageItem> page : sortedPages) {
-            try {
-                readDocument(page.getKey(), page.getValue(), dokuwikiDataDirectory.toPath(),
-                    proxyFilter);
-            } catch (IOException e) {
-                // Don't fail the whole import if a single page fails.
-                this.logger.error("Failed to read page", e);
+            while (nextPage < sortedPages.size() && pendingPages.size() < this.maxPagesInFlight) {
+                PageFiles pageFiles = prefetcher.next();
+                nextPage++;
+                pendingPages.add(this.executor.submit(() -> convertDocument(pageFiles)));
+            }
+
+            ConvertedDocument document = getConversionResult(pendingPages.remove(), "page [" + page.getKey() + "]");
+            writeDocument(page.getKey(), page.getValue(), document, proxyFilter);
+        }
+    }
+
+    private static <T> T getConversionResult(Future<T> future, String subject) throws FilterException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FilterException("Interrupted while waiting for the conversion of " + subject, e);
+        } catch (ExecutionException e) {
+            throw new FilterException("Failed to convert " + subject, e.getCause());
+        }
+    }
+
+    /**
+     * Read the mime types from DokuWiki's {@code mime.conf} and {@code mime.local.conf} configuration files.
+     *
+     * @return the mime types indexed by lower case extension, {@code null} if the wiki doesn't configure any
+     */
+    private Map<String, String> readMimeTypes(File configurationDirectory)
+    {
+        Map<String, String> mimeTypes = new HashMap<>();
+        for (String fileName : MIME_CONFIGURATION_FILES) {
+            File file = new File(configurationDirectory, fileName);
+            if (file.isFile()) {
+                try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    MimeTypeDetector.readMimeTypes(reader, mimeTypes);
+                } catch (IOException e) {
+                    this.logger.warn("Failed to read the mime types from [{}]. Root cause: {}", file,
+                        ExceptionUtils.getRootCauseMessage(e));
+                }
             }
         }
+
+        return mimeTypes.isEmpty() ? null : Map.copyOf(mimeTypes);
     }
 
     private void readUsers(File userInformation, DokuWikiFilter proxyFilter) throws FilterException
@@ -344,52 +923,86 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
         }
     }
 
-    private Map<LocalDocumentReference, DokuWikiPageItem> readDocumentMap(Path pagesDirectory) throws IOException
+    /**
+     * List all files of the pages, metadata, attic and media directories once.
+     */
+    private DokuWikiDataInventory readInventory(Path dokuwikiDataDirectory, DokuWikiDirectoryWalker walker)
+        throws FilterException
+    {
+        List<Path> pageFiles;
+        try {
+            pageFiles = walker.walk(dokuwikiDataDirectory.resolve(KEY_PAGES_DIRECTORY));
+        } catch (IOException e) {
+            // This shouldn't happen as this is really just recursively scanning a directory and would thus indicate
+            // a major problem.
+            throw new FilterException("Failed to read page list", e);
+        }
+
+        return new DokuWikiDataInventory(pageFiles,
+            walkDirectory(dokuwikiDataDirectory.resolve(KEY_META_FOLDER), walker),
+            walkDirectory(dokuwikiDataDirectory.resolve(KEY_ATTIC_FOLDER), walker),
+            walkDirectory(dokuwikiDataDirectory.resolve(KEY_MEDIA_FOLDER), walker));
+    }
+
+    private List<Path> walkDirectory(Path directory, DokuWikiDirectoryWalker walker)
+    {
+        List<Path> files = Collections.emptyList();
+
+        // A wiki without metadata, revisions or attachments doesn't need to have the directory.
+        if (Files.isDirectory(directory)) {
+            try {
+                files = walker.walk(directory);
+            } catch (IOException e) {
+                this.logger.error("Failed to list the files of directory [{}]", directory, e);
+            }
+        }
+
+        return files;
+    }
+
+    private Map<LocalDocumentReference, DokuWikiPageItem> readDocumentMap(Path pagesDirectory)
     {
         Map<LocalDocumentReference, DokuWikiPageItem> documentMap = new HashMap<>();
 
-        try (Stream<Path> filesStream = Files.walk(pagesDirectory)) {
-            filesStream
-                .filter(Files::isRegularFile)
-                .filter(path -> {
-                    String fileName = path.getFileName().toString();
-                    return fileName.endsWith(KEY_TEXT_FILE_FORMAT) && !fileName.startsWith(KEY_FULL_STOP);
-                })
-                .forEach(path -> {
-                    String fileName = path.getFileName().toString();
-
-                    String dokuwikiReference = dokuWikiReferenceConverter.getDokuWikiReference(path, pagesDirectory);
-                    LocalDocumentReference documentReference =
-                        this.dokuWikiReferenceConverter.getDocumentReference(dokuwikiReference);
-
-                    DokuWikiPageItem pageItem = new DokuWikiPageItem(dokuwikiReference, path);
-
-                    if (documentMap.containsKey(documentReference)) {
-                        // Conflict resolution: We keep the one where the file is named "start". The
-                        // other one is mapped to a terminal document unless it is in the root directory, in which case
-                        // the only sensible option seems to be to make it a terminal document in the main space.
-                        DokuWikiPageItem itemToFix;
-                        if (fileName.equals(DOKUWIKI_START_PAGE + KEY_TEXT_FILE_FORMAT)) {
-                            itemToFix = documentMap.get(documentReference);
-                            documentMap.put(documentReference, pageItem);
-                        } else {
-                            itemToFix = pageItem;
-                        }
-
-                        if (documentReference.getParent().getParent() == null) {
-                            documentReference = new LocalDocumentReference(Collections.singletonList(KEY_MAIN_SPACE),
-                                documentReference.getParent().getName());
-                        } else {
-                            documentReference = new LocalDocumentReference(documentReference.getParent().getName(),
-                                documentReference.getParent().getParent());
-                        }
-
-                        documentMap.put(documentReference, itemToFix);
-                    } else {
+        this.inventory.getPageFiles().stream()
+            .filter(path -> {
+                String fileName = path.getFileName().toString();
+                return fileName.endsWith(KEY_TEXT_FILE_FORMAT) && !fileName.startsWith(KEY_FULL_STOP);
+            })
+            .forEach(path -> {
+                String fileName = path.getFileName().toString();
+
+                String dokuwikiReference = dokuWikiReferenceConverter.getDokuWikiReference(path, pagesDirectory);
+                LocalDocumentReference documentReference =
+                    this.dokuWikiReferenceConverter.getDocumentReference(dokuwikiReference);
+
+                DokuWikiPageItem pageItem = new DokuWikiPageItem(dokuwikiReference, path);
+
+                if (documentMap.containsKey(documentReference)) {
+                    // Conflict resolution: We keep the one where the file is named "start". The
+                    // other one is mapped to a terminal document unless it is in the root directory, in which case
+                    // the only sensible option seems to be to make it a terminal document in the main space.
+                    DokuWikiPageItem itemToFix;
+                    if (fileName.equals(DOKUWIKI_START_PAGE + KEY_TEXT_FILE_FORMAT)) {
+                        itemToFix = documentMap.get(documentReference);
                         documentMap.put(documentReference, pageItem);
+                    } else {
+                        itemToFix = pageItem;
+                    }
+
+                    if (documentReference.getParent().getParent() == null) {
+                        documentReference = new LocalDocumentReference(Collections.singletonList(KEY_MAIN_SPACE),
+                            documentReference.getParent().getName());
+                    } else {
+                        documentReference = new LocalDocumentReference(documentReference.getParent().getName(),
+                            documentReference.getParent().getParent());
                     }
-                });
-        }
+
+                    documentMap.put(documentReference, itemToFix);
+                } else {
+                    documentMap.put(documentReference, pageItem);
+                }
+            });
 
         return documentMap;
     }
@@ -398,39 +1011,158 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
     {
         Map<LocalDocumentReference, DokuWikiPageItem> attachmentMap = new HashMap<>();
 
-        try (Stream<Path> filesStream = Files.walk(mediaDirectory)) {
-            filesStream
-                .filter(Files::isRegularFile)
-                .filter(path -> {
-                    String attachmentName = path.getFileName().toString();
-                    return !attachmentName.startsWith(KEY_FULL_STOP) && !attachmentName.startsWith("_");
-                })
-                .forEach(path -> {
-                    Path fakePageFile = path.getParent().resolve(DOKUWIKI_START_PAGE + KEY_TEXT_FILE_FORMAT);
-                    String dokuwikiReference =
-                        this.dokuWikiReferenceConverter.getDokuWikiReference(fakePageFile, mediaDirectory);
-                    LocalDocumentReference documentReference =
-                        this.dokuWikiReferenceConverter.getDocumentReference(dokuwikiReference);
-
-                    List<Path> attachments = attachmentMap.computeIfAbsent(documentReference, k ->
-                        new DokuWikiPageItem(dokuwikiReference, fakePageFile)).getAttachments();
-                    attachments.add(path);
-                });
-        } catch (IOException e) {
-            this.logger.error("Failed to list attachments", e);
-        }
+        this.inventory.getMediaFiles().stream()
+            .filter(path -> {
+                String attachmentName = path.getFileName().toString();
+                return !attachmentName.startsWith(KEY_FULL_STOP) && !attachmentName.startsWith("_");
+            })
+            .forEach(path -> {
+                Path fakePageFile = path.getParent().resolve(DOKUWIKI_START_PAGE + KEY_TEXT_FILE_FORMAT);
+                String dokuwikiReference =
+                    this.dokuWikiReferenceConverter.getDokuWikiReference(fakePageFile, mediaDirectory);
+                LocalDocumentReference documentReference =
+                    this.dokuWikiReferenceConverter.getDocumentReference(dokuwikiReference);
+
+                List<Path> attachments = attachmentMap.computeIfAbsent(documentReference, k ->
+                    new DokuWikiPageItem(dokuwikiReference, fakePageFile)).getAttachments();
+                attachments.add(path);
+            });
 
         return attachmentMap;
     }
 
+    private void readDocument(LocalDocumentReference documentReference, PageFiles pageFiles,
+        DokuWikiFilter proxyFilter) throws FilterException
+    {
+        writeDocument(documentReference, pageFiles.pageItem, convertDocument(pageFiles), proxyFilter);
+    }
 
-    private void readDocument(LocalDocumentReference documentReference, DokuWikiPageItem pageItem,
-        Path dokuwikiDataDirectory, DokuWikiFilter proxyFilter) throws FilterException, IOException
+    /**
+     * Read the metadata and convert the content of a page. This doesn't send any events and can thus be done in
+     * parallel for several pages.
+     */
+    private ConvertedDocument convertDocument(PageFiles pageFiles)
     {
-        Path file = pageItem.getPageFile();
+        // wiki document
+        ConvertedDocument document = new ConvertedDocument();
 
+        try {
+            byte[] metadataFileContents = pageFiles.getMetadata();
+            if (metadataFileContents != null) {
+                Map<String, Object> documentMetadata = new HashMap<>();
+                try {
+                    METADATA_READER.read(metadataFileContents, documentMetadata);
+                } catch (ParseException e) {
+                    this.logger.warn("Malformed DokuWiki metadata file [{}], only importing the metadata before the "
+                        + "error. Root cause: {}.", pageFiles.metaFile, e.getMessage());
+                }
+                readDocumentParametersFromMetadata(documentMetadata, document.documentLocaleParameters);
+
+                // Wiki document revision
+                Long created = getLongMetadata(documentMetadata, KEY_DATE, KEY_CREATED);
+                Long modified = getLongMetadata(documentMetadata, KEY_DATE, KEY_MODIFIED);
+                if (created != null && modified != null && created < modified) {
+                    // read revisions
+                    document.revisions = convertPageRevisions(pageFiles);
+                } else {
+                    convertDocumentContent(pageFiles, document);
+                }
+            } else {
+                this.logger.warn("File [{}] not found (Some datafile's properties (eg. filesize, "
+                    + "last modified date) are not imported. Details can be found on "
+                    + "https://www.dokuwiki.org/devel:metadata)", pageFiles.metaFile);
+                convertDocumentContent(pageFiles, document);
+            }
+        } catch (Exception e) {
+            this.logger.warn(
+                "Failed to parse DokuWiki page with metadata file [{}], ignoring metadata. Root cause: {}.",
+                pageFiles.metaFile, ExceptionUtils.getRootCauseMessage(e));
+            convertDocumentContent(pageFiles, document);
+        }
+
+        return document;
+    }
+
+    private void convertDocumentContent(PageFiles pageFiles, ConvertedDocument document)
+    {
+        try {
+            // The page might not actually exist if it is just created for storing attachments.
+            byte[] content = pageFiles.getContent();
+            if (content != null) {
+                String pageContents = new String(content, StandardCharsets.UTF_8);
+
+                String convertedContent = parseContent(pageContents, pageFiles.pageItem.getDokuWikiReference());
+                document.documentLocaleParameters.put(WikiDocumentFilter.PARAMETER_CONTENT, convertedContent);
+            }
+        } catch (Exception e) {
+            document.contentFailed = true;
+            this.logger.error("Failed to parse DokuWiki file [{}]", pageFiles.pageItem.getPageFile(), e);
+        }
+    }
+
+    /**
+     * Get a file of a page, which is read now unless it has been prefetched, and count the time spent waiting for it.
+     */
+    private <T> T getPageFile(Future<T> prefetched, IOSupplier<T> reader) throws IOException
+    {
+        long start = System.nanoTime();
+        try {
+            return prefetched != null ? prefetched.get() : reader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a page file to be read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read a page file", e.getCause());
+        } finally {
+            this.fileWaitTime.add(System.nanoTime() - start);
+        }
+    }
+
+    private static String getFileNameWithoutTxtExtension(Path file)
+    {
+        String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - KEY_TEXT_FILE_FORMAT.length());
+    }
+
+    private PageRevisions convertPageRevisions(PageFiles pageFiles)
+    {
+        // check revision exists, check the attic, parse attic files.
+        List<Path> files = new ArrayList<>(pageFiles.getRevisionFiles());
+        files.sort(Comparator.comparing(p -> extractRevision(pageFiles.fileNameWithoutExtension, p)));
+
+        // Only the kept revisions are decompressed, older revisions are skipped without reading them.
+        int maxRevisions = this.properties.getMaxRevisions();
+        if (maxRevisions > 0 && files.size() > maxRevisions) {
+            files = files.subList(files.size() - maxRevisions, files.size());
+        }
+
+        // The changes provide the author and summary of each revision without having to read the attic files.
+        DokuWikiPageChanges changes = null;
+        try {
+            changes = pageFiles.getChanges();
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the changes file [{}], importing the revisions without their author and "
+                + "summary. Root cause: {}.", pageFiles.changesFile, ExceptionUtils.getRootCauseMessage(e));
+        }
+
+        PageRevisions revisions =
+            new PageRevisions(pageFiles.pageItem, pageFiles.fileNameWithoutExtension, files, changes);
+        revisions.start();
+
+        return revisions;
+    }
+
+    /**
+     * Send the events of a converted page.
+     */
+    private void writeDocument(LocalDocumentReference documentReference, DokuWikiPageItem pageItem,
+        ConvertedDocument document, DokuWikiFilter proxyFilter) throws FilterException
+    {
         if (this.properties.isVerbose()) {
-            this.logger.info("Reading file [{}]", file.toAbsolutePath());
+            this.logger.info("Reading file [{}]", pageItem.getPageFile().toAbsolutePath());
         }
 
         // Begin the space and document.
@@ -449,50 +1181,17 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
 
         proxyFilter.beginWikiDocument(documentReference.getName(), FilterEventParameters.EMPTY);
 
-        // Extract the filename without the file extension.
-        String fileNameWithoutExtension = getFileNameWithoutTxtExtension(file);
-
-        // Extract path below the data directory and replace the pages directory with the meta directory.
-        Path metaSubDirectory = getMatchingDirectory(file.getParent(), dokuwikiDataDirectory, "meta");
-        Path metaFile = metaSubDirectory.resolve(fileNameWithoutExtension + ".meta");
-
-        // wiki document
-        FilterEventParameters documentLocaleParameters = new FilterEventParameters();
-
-        if (Files.isRegularFile(metaFile)) {
-            try {
-                String metadataFileContents = new String(Files.readAllBytes(metaFile), StandardCharsets.UTF_8);
-                MixedArray documentMetadata = Pherialize.unserialize(metadataFileContents).toArray();
-                readDocumentParametersFromMetadata(documentMetadata, documentLocaleParameters);
-
-                // Wiki document revision
-                Long created = getLongMetadata(documentMetadata, KEY_DATE, KEY_CREATED);
-                Long modified = getLongMetadata(documentMetadata, KEY_DATE, KEY_MODIFIED);
-                if (created != null && modified != null && created < modified) {
-                    // Wiki Document Locale
-                    proxyFilter.beginWikiDocumentLocale(Locale.ROOT, documentLocaleParameters);
-                    // read revisions
-                    readPageRevision(pageItem, dokuwikiDataDirectory, proxyFilter);
-                } else {
-                    documentLocaleParameters =
-                        readDocumentContent(pageItem, documentLocaleParameters, proxyFilter);
-                }
-            } catch (Exception e) {
-                this.logger.warn(
-                    "Failed to parse DokuWiki page with metadata file [{}], ignoring metadata. Root cause: {}.",
-                    metaFile, ExceptionUtils.getRootCauseMessage(e));
-                documentLocaleParameters =
-                    readDocumentContent(pageItem, documentLocaleParameters, proxyFilter);
-            }
-        } else {
-            this.logger.warn("File [{}] not found (Some datafile's properties (eg. filesize, "
-                + "last modified date) are not imported. Details can be found on "
-                + "https://www.dokuwiki.org/devel:metadata)", metaFile);
-            documentLocaleParameters =
-                readDocumentContent(pageItem, documentLocaleParameters, proxyFilter);
+        if (document.revisions != null) {
+            // Wiki Document Locale
+            proxyFilter.beginWikiDocumentLocale(Locale.ROOT, document.documentLocaleParameters);
+            writePageRevisions(pageItem, document.revisions, proxyFilter);
+        } else if (!document.contentFailed) {
+            // Wiki Document Locale
+            proxyFilter.beginWikiDocumentLocale(Locale.ROOT, document.documentLocaleParameters);
+            readAttachments(pageItem, proxyFilter);
         }
 
-        proxyFilter.endWikiDocumentLocale(Locale.ROOT, documentLocaleParameters);
+        proxyFilter.endWikiDocumentLocale(Locale.ROOT, document.documentLocaleParameters);
         proxyFilter.endWikiDocument(documentReference.getName(), FilterEventParameters.EMPTY);
 
         // Close spaces in reverse order.
@@ -502,72 +1201,39 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
         }
     }
 
-    private FilterEventParameters readDocumentContent(DokuWikiPageItem pageItem,
-        FilterEventParameters documentLocaleParameters, DokuWikiFilter proxyFilter)
+    private void writePageRevisions(DokuWikiPageItem pageItem, PageRevisions revisions,
+        DokuWikiFilter proxyFilter) throws FilterException
     {
-        Path file = pageItem.getPageFile();
-
-        try {
-            // The page might not actually exist if it is just created for storing attachments.
-            if (Files.isRegularFile(file)) {
-                String pageContents = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
-
-                String convertedContent = parseContent(pageContents, pageItem.getDokuWikiReference());
-                documentLocaleParameters.put(WikiDocumentFilter.PARAMETER_CONTENT, convertedContent);
+        for (List<ConvertedRevision> batch = revisions.nextBatch(); batch != null; batch = revisions.nextBatch()) {
+            for (ConvertedRevision revision : batch) {
+                try {
+                    FilterEventParameters revisionParameters = new FilterEventParameters();
+                    revisionParameters.put(WikiDocumentFilter.PARAMETER_CONTENT, revision.content);
+                    if (revision.change != null) {
+                        readRevisionParametersFromChange(revision.change, revisionParameters);
+                    }
+                    proxyFilter.beginWikiDocumentRevision(revision.revision, revisionParameters);
+                    readAttachments(pageItem, proxyFilter);
+                    proxyFilter.endWikiDocumentRevision(revision.revision, FilterEventParameters.EMPTY);
+                } catch (Exception e) {
+                    this.logger.error("Failed to write revision [{}] of page [{}]", revision.revision,
+                        pageItem.getPageFile(), e);
+                }
             }
-            // Wiki Document Locale
-            proxyFilter.beginWikiDocumentLocale(Locale.ROOT, documentLocaleParameters);
-            readAttachments(pageItem, proxyFilter);
-
-            return documentLocaleParameters;
-        } catch (Exception e) {
-            this.logger.error("Failed to parse DokuWiki file [{}]", file, e);
         }
-
-        return documentLocaleParameters;
-    }
-
-    private static String getFileNameWithoutTxtExtension(Path file)
-    {
-        String fileName = file.getFileName().toString();
-        return fileName.substring(0, fileName.length() - KEY_TEXT_FILE_FORMAT.length());
     }
 
-    private void readPageRevision(DokuWikiPageItem pageItem, Path dokuwikiDataDirectory, DokuWikiFilter proxyFilter)
+    private static void readRevisionParametersFromChange(Change change, FilterEventParameters revisionParameters)
     {
-        Path file = pageItem.getPageFile();
-
-        // check revision exists, check the attic, parse attic files.
-        Path atticSubDirectory = getMatchingDirectory(file.getParent(), dokuwikiDataDirectory, KEY_ATTIC_FOLDER);
-
-        String fileNameWithoutExtension = getFileNameWithoutTxtExtension(file);
-
-        if (Files.isDirectory(atticSubDirectory)) {
-            try (Stream<Path> stream = Files.list(atticSubDirectory)) {
-                stream
-                    // Filter directories.
-                    .filter(Files::isRegularFile)
-                    // Filter files that don't match the current file name.
-                    .filter(p -> PATTERN_ATTIC_VERSION_EXTENSION.matcher(p.getFileName().toString())
-                        .replaceFirst("").equals(fileNameWithoutExtension))
-                    .sorted(Comparator.comparing(p -> extractRevision(fileNameWithoutExtension, p)))
-                    .forEach(p -> {
-                        try {
-                            long revision = extractRevision(fileNameWithoutExtension, p);
-                            String documentContent = extractGZip(p);
-                            String convertedContent = parseContent(documentContent, pageItem.getDokuWikiReference());
-                            FilterEventParameters revisionParameters = new FilterEventParameters();
-                            revisionParameters.put(WikiDocumentFilter.PARAMETER_CONTENT, convertedContent);
-                            proxyFilter.beginWikiDocumentRevision(String.valueOf(revision), revisionParameters);
-                            readAttachments(pageItem, proxyFilter);
-                            proxyFilter.endWikiDocumentRevision(String.valueOf(revision), FilterEventParameters.EMPTY);
-                        } catch (Exception e) {
-                            this.logger.error("Failed to parse file [{}]", p, e);
-                        }
-                    });
-            } catch (IOException e) {
-                this.logger.error("Failed to read attic directory [{}]", atticSubDirectory, e);
-            }
+        revisionParameters.put(WikiDocumentFilter.PARAMETER_REVISION_DATE, new Date(1000 * change.getDate()));
+        if (StringUtils.isNotEmpty(change.getUser())) {
+            revisionParameters.put(WikiDocumentFilter.PARAMETER_REVISION_AUTHOR, change.getUser());
+        }
+        if (StringUtils.isNotEmpty(change.getSummary())) {
+            revisionParameters.put(WikiDocumentFilter.PARAMETER_REVISION_COMMENT, change.getSummary());
+        }
+        if (change.isMinor()) {
+            revisionParameters.put(WikiDocumentFilter.PARAMETER_REVISION_MINOR, true);
         }
     }
 
@@ -578,23 +1244,63 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
     }
 
     private String parseContent(String pageContents, String dokuwikiReference)
+    {
+        return parseContent(pageContents, dokuwikiReference, null);
+    }
+
+    private String parseContent(String pageContents, String dokuwikiReference,
+        DokuWikiIncrementalConverter incrementalConverter)
     {
         String content = "";
         try {
-            // parse pageContent
-            DefaultWikiPrinter printer = new DefaultWikiPrinter();
-            PrintRenderer renderer = this.xwiki21Factory.createRenderer(printer);
-            DokuWikiConverterListener listener = this.dokuWikiConverterListenerProvider.get();
-            listener.setDokuWikiReference(dokuwikiReference);
-            listener.setWrappedListener(renderer);
-            dokuWikiParser.parse(new StringReader(pageContents), listener);
-            content = renderer.getPrinter().toString();
+            if (this.conversionCache != null) {
+                // Revisions are often identical, e.g., after a revert, so only convert each content once.
+                DokuWikiConversionCache.Key key = DokuWikiConversionCache.createKey(pageContents, dokuwikiReference);
+                content = this.conversionCache.get(key);
+                if (content == null) {
+                    content = convertContent(pageContents, dokuwikiReference, incrementalConverter);
+                    this.conversionCache.put(key, content);
+                } else if (incrementalConverter != null) {
+                    // The next revision is most likely closer to this revision than to the last converted one.
+                    incrementalConverter.skip(pageContents);
+                }
+            } else {
+                content = convertContent(pageContents, dokuwikiReference, incrementalConverter);
+            }
         } catch (ParseException e) {
+            content = "";
             this.logger.error("Failed to parse page content", e);
         }
         return content;
     }
 
+    private String convertContent(String pageContents, String dokuwikiReference,
+        DokuWikiIncrementalConverter incrementalConverter) throws ParseException
+    {
+        String content;
+        if (incrementalConverter != null) {
+            content = incrementalConverter.convert(pageContents);
+        } else {
+            content = convertContent(pageContents, dokuwikiReference);
+        }
+        return content;
+    }
+
+    private String convertContent(String pageContents, String dokuwikiReference) throws ParseException
+    {
+        // parse pageContent
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        PrintRenderer renderer = this.xwiki21Factory.createRenderer(printer);
+        DokuWikiConverterListener listener = this.dokuWikiConverterListenerProvider.get();
+        listener.setDokuWikiReference(dokuwikiReference);
+        listener.setLinkResolutionCache(this.linkResolutionCache);
+        listener.setReferenceInterner(this.referenceInterner);
+        listener.setMimeTypes(this.mimeTypes);
+        listener.setWrappedListener(renderer);
+        this.dokuWikiParser.parse(new StringReader(pageContents), listener);
+        return renderer.getPrinter().toString();
+    }
+
     private void readAttachments(DokuWikiPageItem pageItem, DokuWikiFilter proxyFilter)
     {
         for (Path path : pageItem.getAttachments()) {
@@ -629,7 +1335,7 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
         return result;
     }
 
-    private void readDocumentParametersFromMetadata(MixedArray documentMetadata,
+    private void readDocumentParametersFromMetadata(Map<String, Object> documentMetadata,
         FilterEventParameters documentParameters)
     {
         // Save the creator, only available since 2011-05-25 (note that the creator metadata in DokuWiki is the display
@@ -660,47 +1366,80 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
         }
     }
 
-    private static <T> T getMetadata(MixedArray documentMetadata, String arrayName, String key,
-        Function<MixedArray, T> valueExtractor)
+    private static DokuWikiMetadataReader createMetadataReader()
+    {
+        List<List<String>> paths = new ArrayList<>();
+        for (List<String> path : Arrays.asList(Collections.singletonList(KEY_USER),
+            Arrays.asList(KEY_DATE, KEY_CREATED), Arrays.asList(KEY_DATE, KEY_MODIFIED),
+            Arrays.asList(KEY_LAST_CHANGE, KEY_USER))) {
+            paths.add(path);
+            for (String persistentCurrent : Arrays.asList(KEY_CURRENT, KEY_PERSISTENT)) {
+                List<String> persistentCurrentPath = new ArrayList<>();
+                persistentCurrentPath.add(persistentCurrent);
+                persistentCurrentPath.addAll(path);
+                paths.add(persistentCurrentPath);
+            }
+        }
+        return new DokuWikiMetadataReader(paths);
+    }
+
+    private static <T> T getMetadata(Map<String, Object> documentMetadata, String arrayName, String key,
+        Function<Object, T> valueConverter)
     {
         // Try both current and persistent metadata as metadata in DokuWiki is saved inconsistently.
         // In old versions, it seems that sometimes only persistent metadata is present and correct, while in more
         // recent versions it seems that some values only exist in the current metadata for external edits.
         for (String persistentCurrent : Arrays.asList(KEY_CURRENT, KEY_PERSISTENT)) {
-            MixedArray metadataArray;
+            Map<String, Object> metadataArray;
             // Check if we have persistent and current metadata (after 2006-11-06).
             if (documentMetadata.containsKey(persistentCurrent)) {
-                metadataArray = documentMetadata.getArray(persistentCurrent);
+                metadataArray = getArrayMetadata(documentMetadata, persistentCurrent);
             } else {
                 metadataArray = documentMetadata;
             }
-            MixedArray innerMetadata;
+            Map<String, Object> innerMetadata;
             if (arrayName == null) {
                 innerMetadata = metadataArray;
-            } else if (metadataArray.containsKey(arrayName)) {
-                innerMetadata = metadataArray.getArray(arrayName);
             } else {
-                innerMetadata = null;
+                innerMetadata = getArrayMetadata(metadataArray, arrayName);
             }
-            if (innerMetadata != null && innerMetadata.containsKey(key)
-                && StringUtils.isNotBlank(innerMetadata.getString(key))) {
-                return valueExtractor.apply(innerMetadata);
+            if (innerMetadata != null) {
+                Object value = innerMetadata.get(key);
+                // Ignore values that don't have the expected type, like a date that isn't a number.
+                T convertedValue = value != null && StringUtils.isNotBlank(value.toString())
+                    ? valueConverter.apply(value) : null;
+                if (convertedValue != null) {
+                    return convertedValue;
+                }
             }
         }
         return null;
     }
 
-    private static String getStringMetadata(MixedArray documentMetadata, String arrayName, String key)
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getArrayMetadata(Map<String, Object> metadataArray, String key)
+    {
+        Object value = metadataArray != null ? metadataArray.get(key) : null;
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static String getStringMetadata(Map<String, Object> documentMetadata, String arrayName, String key)
     {
-        return getMetadata(documentMetadata, arrayName, key, array -> array.getString(key));
+        return getMetadata(documentMetadata, arrayName, key, value -> value instanceof Map ? null : value.toString());
     }
 
-    private static Long getLongMetadata(MixedArray documentMetadata, String arrayName, String key)
+    private static Long getLongMetadata(Map<String, Object> documentMetadata, String arrayName, String key)
     {
-        return getMetadata(documentMetadata, arrayName, key, array -> array.getLong(key));
+        return getMetadata(documentMetadata, arrayName, key, value -> {
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            String text = value.toString().trim();
+            return NumberUtils.isParsable(text) ? NumberUtils.createNumber(text).longValue() : null;
+        });
     }
 
-    private static String getStringMetadata(MixedArray documentMetadata, String key)
+    private static String getStringMetadata(Map<String, Object> documentMetadata, String key)
     {
         return getStringMetadata(documentMetadata, null, key);
     }
@@ -727,13 +1466,6 @@ public class DokuWikiInputFilterStream extends AbstractBeanInputFilterStream<Dok
         }
     }
 
-    private String extractGZip(Path file) throws IOException
-    {
-        try (GZIPInputStream gzipInputStream = new GZIPInputStream(Files.newInputStream(file))) {
-            return IOUtils.toString(gzipInputStream, StandardCharsets.UTF_8);
-        }
-    }
-
     @Override
     public void close() throws IOException
     {
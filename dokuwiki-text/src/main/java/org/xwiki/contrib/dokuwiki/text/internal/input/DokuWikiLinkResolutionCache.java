@@ -0,0 +1,241 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xwiki.rendering.listener.reference.ResourceReference;
+
+/**
+ * Cache of the XWiki resource references that DokuWiki link and media targets are resolved to, shared by the pages and
+ * revisions of an import as the same targets, e.g., navigation links and shared media, are used on many pages.
+ * Entries are identified by the kind of target, the raw target and the context it is resolved against, i.e., the
+ * namespace of the page or the page itself for targets relative to the page. The entries are distributed over
+ * several independently locked segments so that pages that are converted in parallel rarely wait for each other, and
+ * each segment evicts its least recently used entries when it is full.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiLinkResolutionCache
+{
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final int HASH_SPREAD_SHIFT = 16;
+
+    /**
+     * The kind of a resolved target.
+     */
+    public enum TargetType
+    {
+        /**
+         * A link to a page.
+         */
+        LINK,
+
+        /**
+         * A link to or an image of a media file.
+         */
+        MEDIA
+    }
+
+    /**
+     * The key of a cache entry.
+     */
+    public static final class Key
+    {
+        private final TargetType type;
+
+        private final String context;
+
+        private final String target;
+
+        private final int hashCode;
+
+        private Key(TargetType type, String context, String target)
+        {
+            this.type = type;
+            this.context = context;
+            this.target = target;
+            this.hashCode = Objects.hash(type, context, target);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.type == other.type && this.target.equals(other.target)
+                && this.context.equals(other.context);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+    }
+
+    /**
+     * A segment of the cache, which evicts its least recently used entry when it exceeds its capacity.
+     */
+    private static final class Segment extends LinkedHashMap<Key, ResourceReference>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity)
+        {
+            super((int) (capacity / LOAD_FACTOR) + 1, LOAD_FACTOR, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ResourceReference> eldest)
+        {
+            return size() > this.capacity;
+        }
+    }
+
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries the maximum number of cached references
+     */
+    public DokuWikiLinkResolutionCache(int maxEntries)
+    {
+        int segmentCount = Math.max(1, Math.min(SEGMENT_COUNT, maxEntries));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Distribute the entries such that the segments don't hold more than the maximum together.
+            this.segments[i] = new Segment(maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * @param type the kind of target
+     * @param context the context the target is resolved against
+     * @param target the raw DokuWiki target
+     * @return the key identifying the resolved reference
+     */
+    public static Key createKey(TargetType type, String context, String target)
+    {
+        return new Key(type, context, target);
+    }
+
+    /**
+     * @param key the key of the resolved reference
+     * @return the cached reference, which must not be modified, {@code null} if it isn't cached
+     */
+    public ResourceReference get(Key key)
+    {
+        Segment segment = getSegment(key);
+        ResourceReference result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+
+        if (result != null) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache a resolved reference and evict the least recently used entry of its segment if the segment is full.
+     *
+     * @param key the key of the resolved reference
+     * @param reference the resolved reference, which must not be modified afterwards
+     */
+    public void put(Key key, ResourceReference reference)
+    {
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            segment.put(key, reference);
+        }
+    }
+
+    /**
+     * @return the number of lookups that found the resolved reference
+     */
+    public long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that didn't find the resolved reference
+     */
+    public long getMisses()
+    {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the ratio of lookups that found the resolved reference, 0 if there hasn't been any lookup
+     */
+    public double getHitRate()
+    {
+        long hitCount = getHits();
+        long lookupCount = hitCount + getMisses();
+        return lookupCount > 0 ? (double) hitCount / lookupCount : 0;
+    }
+
+    /**
+     * @return the number of cached references
+     */
+    public int getEntryCount()
+    {
+        int count = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                count += segment.size();
+            }
+        }
+        return count;
+    }
+
+    private Segment getSegment(Key key)
+    {
+        // Spread the bits of the hash code as the lower bits of string hash codes are often similar.
+        int hash = key.hashCode ^ (key.hashCode >>> HASH_SPREAD_SHIFT);
+        return this.segments[Math.floorMod(hash, this.segments.length)];
+    }
+}
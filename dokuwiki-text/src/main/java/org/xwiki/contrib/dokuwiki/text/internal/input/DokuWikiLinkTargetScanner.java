@@ -0,0 +1,451 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang3.CharUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Classifies DokuWiki link targets and normalizes DokuWiki ids the way DokuWiki cleans them, by scanning the
+ * characters of the target instead of applying regular expressions and splitting the id into strings. The id is
+ * resolved and its namespaces are cleaned into buffers that are reused for all ids, so a scanner must not be used by
+ * several threads at the same time.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiLinkTargetScanner
+{
+    private static final char NAMESPACE_SEPARATOR = ':';
+
+    private static final char PAGE_RELATIVE_PREFIX = '~';
+
+    private static final char DOT = '.';
+
+    private static final char UNDERSCORE = '_';
+
+    private static final char HYPHEN = '-';
+
+    private static final char ANCHOR_SEPARATOR = '#';
+
+    private static final char QUERY_SEPARATOR = '?';
+
+    private static final char EMAIL_SEPARATOR = '@';
+
+    private static final String URL_SCHEME_SEPARATOR = "://";
+
+    private static final String DOKUWIKI_NAMESPACE_INDEX = "start";
+
+    private static final char MAX_ASCII = 0x7F;
+
+    /**
+     * The characters that the dot doesn't match in regular expressions and that may precede the end of the input.
+     */
+    private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 8;
+
+    /**
+     * The languages whose lower case rules differ from the default rules even for ASCII letters.
+     */
+    private static final Set<String> SPECIAL_LOWER_CASE_LANGUAGES = Set.of("tr", "az", "lt");
+
+    /**
+     * The kind of a link target.
+     */
+    public enum LinkType
+    {
+        /**
+         * An external URL with a scheme, e.g., {@code https://www.dokuwiki.org}.
+         */
+        URL,
+
+        /**
+         * An email address.
+         */
+        EMAIL_ADDRESS,
+
+        /**
+         * A section of the current page, or the current page itself.
+         */
+        SECTION,
+
+        /**
+         * A page of the wiki.
+         */
+        PAGE
+    }
+
+    private final DokuWikiDeaccent deaccent;
+
+    /**
+     * The id with its prefix resolved.
+     */
+    private final StringBuilder id = new StringBuilder();
+
+    /**
+     * The cleaned namespaces of the id, each one preceded by a separator unless it is empty.
+     */
+    private final StringBuilder normalizedId = new StringBuilder();
+
+    /**
+     * The start of each namespace in the normalized id, such that going up a namespace only resets the length.
+     */
+    private int[] segmentStarts = new int[INITIAL_SEGMENT_CAPACITY];
+
+    private int segmentCount;
+
+    /**
+     * @param deaccent the helper that replaces accented characters like DokuWiki
+     */
+    public DokuWikiLinkTargetScanner(DokuWikiDeaccent deaccent)
+    {
+        this.deaccent = deaccent;
+    }
+
+    /**
+     * Classify a link target like the regular expressions {@code ^([a-z0-9\-.+]+?)://} (case insensitive) and
+     * {@code ^\S+@\S+(?:\?.*)?$} did.
+     *
+     * @param target the trimmed link target
+     * @return the kind of link target
+     */
+    public LinkType classify(String target)
+    {
+        LinkType type;
+
+        if (isExternalUrl(target)) {
+            type = LinkType.URL;
+        } else if (isEmailAddress(target)) {
+            type = LinkType.EMAIL_ADDRESS;
+        } else if (StringUtils.isBlank(target) || target.charAt(0) == ANCHOR_SEPARATOR) {
+            type = LinkType.SECTION;
+        } else {
+            type = LinkType.PAGE;
+        }
+
+        return type;
+    }
+
+    /**
+     * Resolve a DokuWiki id relative to the current page and clean it like DokuWiki with the default settings.
+     *
+     * @param target the id, possibly relative to the current page or namespace
+     * @param dokuWikiReference the DokuWiki reference of the current page
+     * @param contextNamespace the namespace of the current page, empty for pages at the top level
+     * @return the absolute, cleaned id without the leading separator
+     */
+    public String normalizeId(String target, String dokuWikiReference, String contextNamespace)
+    {
+        resolvePrefix(target, dokuWikiReference, contextNamespace);
+
+        this.normalizedId.setLength(0);
+        this.segmentCount = 0;
+
+        // Trailing empty namespaces are ignored like String#split does.
+        int end = this.id.length();
+        while (end > 0 && this.id.charAt(end - 1) == NAMESPACE_SEPARATOR) {
+            end--;
+        }
+
+        int start = 0;
+        while (start < end) {
+            int segmentEnd = start;
+            while (segmentEnd < end && this.id.charAt(segmentEnd) != NAMESPACE_SEPARATOR) {
+                segmentEnd++;
+            }
+            addSegment(start, segmentEnd);
+            start = segmentEnd + 1;
+        }
+
+        if (this.segmentCount == 0) {
+            return DOKUWIKI_NAMESPACE_INDEX;
+        }
+
+        return this.normalizedId.length() > 0 ? this.normalizedId.substring(1) : "";
+    }
+
+    private void resolvePrefix(String target, String dokuWikiReference, String contextNamespace)
+    {
+        this.id.setLength(0);
+
+        // "~" means relative to the current page, a leading "." relative to the current namespace.
+        boolean pageRelative = !target.isEmpty() && target.charAt(0) == PAGE_RELATIVE_PREFIX;
+        boolean dotRelative = startsWithDot(pageRelative ? dokuWikiReference : target);
+
+        // Ids without any namespace are auto-relative to the current namespace.
+        if (dotRelative || !pageRelative && !containsSeparator(target)) {
+            this.id.append(contextNamespace).append(NAMESPACE_SEPARATOR);
+        }
+
+        int idStart = this.id.length();
+        int start = 0;
+        if (pageRelative) {
+            this.id.append(dokuWikiReference).append(NAMESPACE_SEPARATOR);
+            start = 1;
+        }
+
+        // Replace "/" and ";" by ":" to conform with DokuWiki cleaning.
+        for (int i = start; i < target.length(); i++) {
+            char c = target.charAt(i);
+            this.id.append(isSeparator(c) ? NAMESPACE_SEPARATOR : c);
+        }
+
+        if (dotRelative) {
+            insertInitialDotSeparator(idStart);
+        }
+    }
+
+    /**
+     * Insert a separator after the leading dots that aren't followed by a separator yet, like DokuWiki does with the
+     * regular expression {@code ^((\.+:)*)(\.+)(?=[^:\.])}.
+     */
+    private void insertInitialDotSeparator(int start)
+    {
+        int length = this.id.length();
+        int groupStart = start;
+        int dotsEnd;
+        while (true) {
+            dotsEnd = groupStart;
+            while (dotsEnd < length && this.id.charAt(dotsEnd) == DOT) {
+                dotsEnd++;
+            }
+            if (dotsEnd > groupStart && dotsEnd < length && this.id.charAt(dotsEnd) == NAMESPACE_SEPARATOR) {
+                groupStart = dotsEnd + 1;
+            } else {
+                break;
+            }
+        }
+
+        if (dotsEnd > groupStart && dotsEnd < length) {
+            this.id.insert(dotsEnd, NAMESPACE_SEPARATOR);
+        }
+    }
+
+    private void addSegment(int start, int end)
+    {
+        int length = end - start;
+        if (length == 2 && this.id.charAt(start) == DOT && this.id.charAt(start + 1) == DOT) {
+            // Go up one namespace.
+            if (this.segmentCount > 0) {
+                this.normalizedId.setLength(this.segmentStarts[--this.segmentCount]);
+            }
+        } else if (length != 1 || this.id.charAt(start) != DOT) {
+            if (this.segmentCount == this.segmentStarts.length) {
+                this.segmentStarts = Arrays.copyOf(this.segmentStarts, this.segmentCount * 2);
+            }
+            this.segmentStarts[this.segmentCount++] = this.normalizedId.length();
+            appendCleanSegment(start, end);
+        }
+    }
+
+    /**
+     * Append the namespace trimmed, in lower case and deaccented, with all characters but letters, numbers, "_", ":",
+     * "." and "-" replaced by "_", repeated "_" collapsed and ":", ".", "_" and "-" stripped from both ends.
+     */
+    private void appendCleanSegment(int segmentStart, int segmentEnd)
+    {
+        int start = segmentStart;
+        int end = segmentEnd;
+        while (start < end && this.id.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && this.id.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        CharSequence segment = this.id;
+        if (!isAscii(start, end) || SPECIAL_LOWER_CASE_LANGUAGES.contains(Locale.getDefault().getLanguage())) {
+            // Lower case conversion of other characters depends on the context, convert the namespace as a whole.
+            // This assumes the default setting, i.e., $conf['deaccent'] = 1 in DokuWiki
+            segment = this.deaccent.deaccent(this.id.substring(start, end).toLowerCase());
+            start = 0;
+            end = segment.length();
+        }
+
+        int outputStart = this.normalizedId.length();
+        this.normalizedId.append(NAMESPACE_SEPARATOR);
+        int i = start;
+        while (i < end) {
+            int codePoint = Character.codePointAt(segment, i);
+            i += Character.charCount(codePoint);
+
+            int c = isIdCharacter(codePoint) ? toLowerCaseAscii(codePoint) : UNDERSCORE;
+            int outputLength = this.normalizedId.length();
+            if (outputLength == outputStart + 1 ? !isStripped(c)
+                : c != UNDERSCORE || this.normalizedId.charAt(outputLength - 1) != UNDERSCORE) {
+                this.normalizedId.appendCodePoint(c);
+            }
+        }
+
+        int outputEnd = this.normalizedId.length();
+        while (outputEnd > outputStart + 1 && isStripped(this.normalizedId.charAt(outputEnd - 1))) {
+            outputEnd--;
+        }
+        this.normalizedId.setLength(outputEnd > outputStart + 1 ? outputEnd : outputStart);
+    }
+
+    private boolean isAscii(int start, int end)
+    {
+        for (int i = start; i < end; i++) {
+            if (this.id.charAt(i) > MAX_ASCII) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isIdCharacter(int codePoint)
+    {
+        switch (Character.getType(codePoint)) {
+            case Character.UPPERCASE_LETTER:
+            case Character.LOWERCASE_LETTER:
+            case Character.TITLECASE_LETTER:
+            case Character.MODIFIER_LETTER:
+            case Character.OTHER_LETTER:
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return true;
+            default:
+                return codePoint == UNDERSCORE || codePoint == NAMESPACE_SEPARATOR || codePoint == DOT
+                    || codePoint == HYPHEN;
+        }
+    }
+
+    private static int toLowerCaseAscii(int codePoint)
+    {
+        return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+    }
+
+    private static boolean isStripped(int c)
+    {
+        return c == NAMESPACE_SEPARATOR || c == DOT || c == UNDERSCORE || c == HYPHEN;
+    }
+
+    private static boolean startsWithDot(String string)
+    {
+        return !string.isEmpty() && string.charAt(0) == DOT;
+    }
+
+    private static boolean isSeparator(char c)
+    {
+        return c == NAMESPACE_SEPARATOR || c == '/' || c == ';';
+    }
+
+    private static boolean containsSeparator(String string)
+    {
+        for (int i = 0; i < string.length(); i++) {
+            if (isSeparator(string.charAt(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the target starts with a scheme made of ASCII letters, digits, "-", "." and "+"
+     *     followed by "://"
+     */
+    private static boolean isExternalUrl(String target)
+    {
+        int schemeEnd = 0;
+        while (schemeEnd < target.length() && isSchemeCharacter(target.charAt(schemeEnd))) {
+            schemeEnd++;
+        }
+
+        return schemeEnd > 0 && target.startsWith(URL_SCHEME_SEPARATOR, schemeEnd);
+    }
+
+    private static boolean isSchemeCharacter(char c)
+    {
+        return CharUtils.isAsciiAlphanumeric(c) || c == HYPHEN || c == DOT || c == '+';
+    }
+
+    /**
+     * @return {@code true} if the target consists of non-whitespace characters around an "@", optionally followed by
+     *     a query string that may contain whitespace but no line terminator
+     */
+    private static boolean isEmailAddress(String target)
+    {
+        int length = target.length();
+        int separator = -1;
+        int whitespace = length;
+        for (int i = 0; i < length; i++) {
+            char c = target.charAt(i);
+            if (isWhitespace(c)) {
+                whitespace = i;
+                break;
+            } else if (separator < 0 && c == EMAIL_SEPARATOR && i > 0) {
+                separator = i;
+            }
+        }
+
+        if (separator < 0) {
+            return false;
+        } else if (whitespace == length) {
+            return separator < length - 1;
+        } else {
+            return isQueryString(target, separator, whitespace);
+        }
+    }
+
+    /**
+     * @return {@code true} if the whitespace is part of a query string that starts after the domain of the email
+     *     address and that doesn't contain any line terminator
+     */
+    private static boolean isQueryString(String target, int separator, int whitespace)
+    {
+        int length = target.length();
+        int query = whitespace - 1;
+        while (query >= separator + 2 && target.charAt(query) != QUERY_SEPARATOR) {
+            query--;
+        }
+        if (query < separator + 2) {
+            return false;
+        }
+
+        // The end of the input may be preceded by a final line terminator.
+        int end = isLineTerminator(target.charAt(length - 1)) ? length - 1 : length;
+        for (int i = query + 1; i < end; i++) {
+            if (isLineTerminator(target.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c >= '\t' && c <= '\r';
+    }
+
+    private static boolean isLineTerminator(char c)
+    {
+        return LINE_TERMINATORS.indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.rendering.parser.ParseException;
+
+/**
+ * Reads the values at some key paths from the metadata files of DokuWiki, which use the serialization format of PHP.
+ * The data is read in a single pass over its bytes and the values that aren't on one of the key paths are skipped
+ * without being decoded, so the large parts of the metadata that aren't imported, like the relations, the abstract or
+ * the internal metadata, are never materialized.
+ * <p>
+ * The reader is tolerant of malformed data: when the length of a string doesn't match its content, as it happens when
+ * the encoding of the files has been converted, the string ends at the next closing quote instead, and when reading
+ * fails, the values that have been read until then are kept.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiMetadataReader
+{
+    private static final char QUOTE = '"';
+
+    private static final char COLON = ':';
+
+    private static final char SEMICOLON = ';';
+
+    private static final int DECIMAL_RADIX = 10;
+
+    /**
+     * The keys of an array that are on one of the key paths, with the selection of their value.
+     */
+    private static final class Selection
+    {
+        private final Map<String, Selection> children = new HashMap<>();
+    }
+
+    /**
+     * The state of reading one file.
+     */
+    private static final class Parser
+    {
+        private final byte[] data;
+
+        private int position;
+
+        Parser(byte[] data)
+        {
+            this.data = data;
+        }
+
+        /**
+         * Read a value and add it to the parent array if it is selected.
+         */
+        void readValue(Selection selection, Map<String, Object> parent, String key) throws ParseException
+        {
+            char type = next();
+            if (type == 'a') {
+                expect(COLON);
+                readEntries(selection, parent, key);
+            } else if (type == 'O') {
+                // Objects are arrays of properties after the class name.
+                expect(COLON);
+                readString(COLON, false);
+                readEntries(selection, parent, key);
+            } else if (type == 's') {
+                expect(COLON);
+                String value = readString(SEMICOLON, selection != null);
+                if (selection != null) {
+                    parent.put(key, value);
+                }
+            } else {
+                Object value = readScalar(type);
+                if (selection != null) {
+                    parent.put(key, value);
+                }
+            }
+        }
+
+        private void readEntries(Selection selection, Map<String, Object> parent, String key) throws ParseException
+        {
+            int count = readInteger(COLON);
+            expect('{');
+
+            // Add the array before reading its entries to keep them when the rest of the data is malformed.
+            Map<String, Object> array = null;
+            if (selection != null) {
+                array = new HashMap<>();
+                parent.put(key, array);
+            }
+
+            for (int i = 0; i < count; i++) {
+                String entryKey = readKey(selection != null);
+                Selection entrySelection = selection != null ? selection.children.get(entryKey) : null;
+                readValue(entrySelection, array, entryKey);
+            }
+
+            expect('}');
+        }
+
+        private String readKey(boolean decode) throws ParseException
+        {
+            char type = next();
+            expect(COLON);
+
+            String key;
+            if (type == 's') {
+                key = readString(SEMICOLON, decode);
+            } else if (type == 'i') {
+                key = readUntil(SEMICOLON);
+            } else {
+                throw error("Unsupported array key type [" + type + "]");
+            }
+
+            return key;
+        }
+
+        private Object readScalar(char type) throws ParseException
+        {
+            Object value = null;
+
+            if (type == 'N') {
+                expect(SEMICOLON);
+            } else {
+                expect(COLON);
+                String text = readUntil(SEMICOLON);
+                if (type == 'b') {
+                    value = !"0".equals(text);
+                } else if (type == 'i') {
+                    value = parseLong(text);
+                } else if (type == 'd') {
+                    value = parseDouble(text);
+                } else if (type != 'r' && type != 'R') {
+                    // References to other values aren't resolved.
+                    throw error("Unsupported value type [" + type + "]");
+                }
+            }
+
+            return value;
+        }
+
+        private String readString(char terminator, boolean decode) throws ParseException
+        {
+            int length = readInteger(COLON);
+            expect(QUOTE);
+
+            int start = this.position;
+            int end = start + length;
+            if (!isStringEnd(end, terminator)) {
+                // The length doesn't match the content, e.g., because the file has been converted to another encoding.
+                end = start;
+                while (end < this.data.length && !isStringEnd(end, terminator)) {
+                    end++;
+                }
+                if (end == this.data.length) {
+                    throw error("Unterminated string");
+                }
+            }
+            this.position = end + 2;
+
+            return decode ? new String(this.data, start, end - start, StandardCharsets.UTF_8) : null;
+        }
+
+        private boolean isStringEnd(int index, char terminator)
+        {
+            return index >= 0 && index + 1 < this.data.length && this.data[index] == QUOTE
+                && this.data[index + 1] == terminator;
+        }
+
+        private int readInteger(char terminator) throws ParseException
+        {
+            int value = 0;
+            for (char c = next(); c != terminator; c = next()) {
+                int digit = Character.digit(c, DECIMAL_RADIX);
+                if (digit < 0) {
+                    throw error("Invalid length");
+                }
+                value = value * DECIMAL_RADIX + digit;
+            }
+
+            return value;
+        }
+
+        private String readUntil(char terminator) throws ParseException
+        {
+            int start = this.position;
+            int end = start;
+            while (end < this.data.length && this.data[end] != terminator) {
+                end++;
+            }
+            if (end == this.data.length) {
+                throw error("Expected [" + terminator + "]");
+            }
+            this.position = end + 1;
+
+            return new String(this.data, start, end - start, StandardCharsets.US_ASCII);
+        }
+
+        private void expect(char expected) throws ParseException
+        {
+            if (next() != expected) {
+                throw error("Expected [" + expected + "]");
+            }
+        }
+
+        private char next() throws ParseException
+        {
+            if (this.position >= this.data.length) {
+                throw error("Unexpected end of data");
+            }
+
+            return (char) Byte.toUnsignedInt(this.data[this.position++]);
+        }
+
+        private ParseException error(String message)
+        {
+            return new ParseException(message + " at byte [" + this.position + "]");
+        }
+    }
+
+    private final Selection selection = new Selection();
+
+    /**
+     * @param paths the key paths of the values to read, e.g., {@code [date, created]} for the creation date; the
+     *     arrays on the way to the values are read as well
+     */
+    public DokuWikiMetadataReader(Collection<List<String>> paths)
+    {
+        for (List<String> path : paths) {
+            Selection current = this.selection;
+            for (String key : path) {
+                current = current.children.computeIfAbsent(key, k -> new Selection());
+            }
+        }
+    }
+
+    /**
+     * @param data the serialized metadata
+     * @param values the map to add the top-level entries that are on one of the key paths to, arrays are added as
+     *     maps from the keys to the values and scalars as {@link String}, {@link Long}, {@link Double} or
+     *     {@link Boolean}
+     * @throws ParseException if the data is malformed, the values that have been read before the error are still
+     *     added
+     */
+    public void read(byte[] data, Map<String, Object> values) throws ParseException
+    {
+        Parser parser = new Parser(data);
+        if (parser.next() != 'a') {
+            throw parser.error("The metadata isn't an array");
+        }
+        parser.expect(COLON);
+
+        // Read the entries of the top-level array directly into the values.
+        int count = parser.readInteger(COLON);
+        parser.expect('{');
+        for (int i = 0; i < count; i++) {
+            String key = parser.readKey(true);
+            parser.readValue(this.selection.children.get(key), values, key);
+        }
+    }
+
+    private static Object parseLong(String text)
+    {
+        Object value;
+        try {
+            value = Long.valueOf(text);
+        } catch (NumberFormatException e) {
+            // PHP serializes integers that don't fit into 64 bits as floats, but be tolerant of other sources.
+            value = parseDouble(text);
+        }
+
+        return value;
+    }
+
+    private static Object parseDouble(String text)
+    {
+        Object value;
+        try {
+            value = Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            // INF, -INF and NAN, or malformed numbers.
+            value = text;
+        }
+
+        return value;
+    }
+}
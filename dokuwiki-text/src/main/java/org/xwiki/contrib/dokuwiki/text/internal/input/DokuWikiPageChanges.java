@@ -0,0 +1,187 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The changes of a page as logged by DokuWiki in the {@code .changes} file of the page in the metadata directory. Each
+ * line describes the revision of one change with tab-separated fields: the date, the IP address, the type, the page
+ * id, the user, the summary, extra data and, since 2012, the size difference.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiPageChanges
+{
+    private static final char SEPARATOR = '\t';
+
+    private static final int FIELD_IP = 1;
+
+    private static final int FIELD_TYPE = 2;
+
+    private static final int FIELD_USER = 4;
+
+    private static final int FIELD_SUMMARY = 5;
+
+    private static final int MIN_FIELD_COUNT = FIELD_SUMMARY + 1;
+
+    /**
+     * The type of minor edits.
+     */
+    private static final String TYPE_MINOR_EDIT = "e";
+
+    /**
+     * The change that created a revision.
+     */
+    public static final class Change
+    {
+        private final long date;
+
+        private final String ip;
+
+        private final String type;
+
+        private final String user;
+
+        private final String summary;
+
+        private Change(long date, String[] fields)
+        {
+            this.date = date;
+            this.ip = fields[FIELD_IP];
+            this.type = fields[FIELD_TYPE];
+            this.user = fields[FIELD_USER];
+            this.summary = fields[FIELD_SUMMARY];
+        }
+
+        /**
+         * @return the date of the change in seconds since the epoch, which is also the revision it created
+         */
+        public long getDate()
+        {
+            return this.date;
+        }
+
+        /**
+         * @return the IP address of the author
+         */
+        public String getIp()
+        {
+            return this.ip;
+        }
+
+        /**
+         * @return the type of the change: C for the creation, E for an edit, e for a minor edit, D for the deletion
+         *     and R for a revert
+         */
+        public String getType()
+        {
+            return this.type;
+        }
+
+        /**
+         * @return the user who made the change, empty for anonymous changes
+         */
+        public String getUser()
+        {
+            return this.user;
+        }
+
+        /**
+         * @return the summary of the change, possibly empty
+         */
+        public String getSummary()
+        {
+            return this.summary;
+        }
+
+        /**
+         * @return {@code true} if the change has been marked as a minor edit
+         */
+        public boolean isMinor()
+        {
+            return TYPE_MINOR_EDIT.equals(this.type);
+        }
+    }
+
+    private final Map<Long, Change> changes = new HashMap<>();
+
+    /**
+     * Read the changes of a page line by line. Lines that can't be parsed are ignored.
+     *
+     * @param file the {@code .changes} file of the page
+     * @return the changes of the page
+     * @throws IOException if the file cannot be read
+     */
+    public static DokuWikiPageChanges read(Path file) throws IOException
+    {
+        DokuWikiPageChanges pageChanges = new DokuWikiPageChanges();
+
+        // Unlike Files#newBufferedReader, the reader replaces the malformed bytes instead of failing on them, so that
+        // a single badly encoded summary doesn't lose the changes of all the revisions.
+        try (BufferedReader reader =
+            new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+                if (fields.length >= MIN_FIELD_COUNT) {
+                    Long date = parseDate(fields[0]);
+                    if (date != null) {
+                        // When a revision has been logged several times, the last line wins like in DokuWiki.
+                        pageChanges.changes.put(date, new Change(date, fields));
+                    }
+                }
+            }
+        }
+
+        return pageChanges;
+    }
+
+    private static Long parseDate(String field)
+    {
+        if (StringUtils.isNumeric(field)) {
+            try {
+                return Long.valueOf(field);
+            } catch (NumberFormatException e) {
+                // The date overflows a long.
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param revision the revision, i.e., the date of the change in seconds since the epoch
+     * @return the change that created the revision, {@code null} if it hasn't been logged
+     */
+    public Change get(long revision)
+    {
+        return this.changes.get(revision);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * The serialized XWiki references of the cleaned DokuWiki ids of an import, such that the references that links and
+ * media point to are created and serialized only once per id and the same string instance is reused for all links to
+ * the same page or media file. Once the maximum number of ids is reached, the references of new ids are serialized on
+ * each call without being kept.
+ *
+ * @version $Id$
+ * @since 3.2
+ */
+public class DokuWikiReferenceInterner
+{
+    /**
+     * The default maximum number of ids per kind of reference, far more than the pages and media files of most wikis.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private final int maxEntries;
+
+    private final Map<String, String> documentReferences = new ConcurrentHashMap<>();
+
+    private final Map<String, String> attachmentReferences = new ConcurrentHashMap<>();
+
+    /**
+     * Create an interner that keeps at most {@link #DEFAULT_MAX_ENTRIES} ids per kind of reference.
+     */
+    public DokuWikiReferenceInterner()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of ids per kind of reference
+     */
+    public DokuWikiReferenceInterner(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param id the cleaned DokuWiki id of a page
+     * @param serializer creates and serializes the XWiki document reference of the id
+     * @return the serialized document reference
+     */
+    public String getDocumentReference(String id, UnaryOperator<String> serializer)
+    {
+        return intern(this.documentReferences, id, serializer);
+    }
+
+    /**
+     * @param id the cleaned DokuWiki id of a media file
+     * @param serializer creates and serializes the XWiki attachment reference of the id
+     * @return the serialized attachment reference
+     */
+    public String getAttachmentReference(String id, UnaryOperator<String> serializer)
+    {
+        return intern(this.attachmentReferences, id, serializer);
+    }
+
+    /**
+     * @return the number of ids whose serialized reference is kept
+     */
+    public int getEntryCount()
+    {
+        return this.documentReferences.size() + this.attachmentReferences.size();
+    }
+
+    private String intern(Map<String, String> references, String id, UnaryOperator<String> serializer)
+    {
+        String reference = references.get(id);
+
+        if (reference == null) {
+            if (references.size() < this.maxEntries) {
+                reference = references.computeIfAbsent(id, serializer);
+            } else {
+                reference = serializer.apply(id);
+            }
+        }
+
+        return reference;
+    }
+}
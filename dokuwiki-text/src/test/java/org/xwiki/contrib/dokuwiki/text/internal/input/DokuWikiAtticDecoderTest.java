@@ -0,0 +1,271 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link DokuWikiAtticDecoder}, against the gzip and bzip2 streams of the JDK and Commons Compress.
+ *
+ * @version $Id$
+ */
+class DokuWikiAtticDecoderTest
+{
+    private static final String CONTENT = "====== Page ======\n\nSome **text** with ümlauts and 中文.\n";
+
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private static final int FLAG_HEADER_CRC = 2;
+
+    private static final int FLAG_EXTRA = 4;
+
+    private static final int FLAG_NAME = 8;
+
+    private static final int FLAG_COMMENT = 16;
+
+    @TempDir
+    private Path directory;
+
+    private final DokuWikiAtticDecoder decoder = new DokuWikiAtticDecoder();
+
+    @AfterEach
+    void tearDown()
+    {
+        this.decoder.close();
+    }
+
+    @Test
+    void decodeGzip() throws IOException
+    {
+        for (String content : new String[] { "", CONTENT, generateContent(100000) }) {
+            assertGzipDecoded(gzip(content));
+        }
+    }
+
+    @Test
+    void decodeGzipHeaderFields() throws IOException
+    {
+        byte[] deflated = deflate(CONTENT);
+        int[] flagCombinations = { FLAG_EXTRA, FLAG_NAME, FLAG_COMMENT, FLAG_HEADER_CRC,
+            FLAG_EXTRA | FLAG_NAME | FLAG_COMMENT | FLAG_HEADER_CRC };
+        for (int flags : flagCombinations) {
+            assertGzipDecoded(gzipMember(flags, deflated, CONTENT));
+        }
+    }
+
+    @Test
+    void decodeConcatenatedGzipMembers() throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(gzip(CONTENT));
+        data.write(gzipMember(FLAG_NAME | FLAG_HEADER_CRC, deflate("second"), "second"));
+        data.write(gzip(""));
+        data.write(gzip(generateContent(5000)));
+
+        assertGzipDecoded(data.toByteArray());
+    }
+
+    @Test
+    void rejectCorruptGzip() throws IOException
+    {
+        byte[] data = gzip(CONTENT);
+
+        byte[] corruptCrc = data.clone();
+        corruptCrc[data.length - 8] ^= 1;
+        assertBothFail(corruptCrc);
+
+        byte[] corruptSize = data.clone();
+        corruptSize[data.length - 4] ^= 1;
+        assertBothFail(corruptSize);
+
+        for (int length : new int[] { 0, 5, 10, 20, data.length - 8, data.length - 1 }) {
+            assertBothFail(Arrays.copyOf(data, length));
+        }
+
+        byte[] truncatedName = Arrays.copyOf(gzipMember(FLAG_NAME, deflate(CONTENT), CONTENT), 14);
+        assertBothFail(truncatedName);
+
+        byte[] corruptHeaderCrc = gzipMember(FLAG_NAME | FLAG_HEADER_CRC, deflate(CONTENT), CONTENT);
+        corruptHeaderCrc[GZIP_HEADER_SIZE + "page.txt".length() + 1] ^= 1;
+        assertBothFail(corruptHeaderCrc);
+
+        // A size that is much larger than the content.
+        byte[] largeSize = data.clone();
+        largeSize[data.length - 1] = 0x7f;
+        assertBothFail(largeSize);
+    }
+
+    @Test
+    void decodeBzip2() throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new BZip2CompressorOutputStream(data)) {
+            outputStream.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(CONTENT, this.decoder.decode(write("page.1700000000.txt.bz2", data.toByteArray())));
+    }
+
+    @Test
+    void decodePlainText() throws IOException
+    {
+        assertEquals(CONTENT,
+            this.decoder.decode(write("page.1700000000.txt", CONTENT.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void decodeUnknownSuffix() throws IOException
+    {
+        assertEquals(CONTENT, this.decoder.decode(write("page.1700000000.txt.gzip", gzip(CONTENT))));
+
+        Path plainFile = write("page.1700000000.txt.old", CONTENT.getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> this.decoder.decode(plainFile));
+    }
+
+    private void assertGzipDecoded(byte[] data) throws IOException
+    {
+        String expected;
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            expected = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Decode twice to reuse the inflater.
+        Path file = write("page.1700000000.txt.gz", data);
+        assertEquals(expected, this.decoder.decode(file));
+        assertEquals(expected, this.decoder.decode(file));
+    }
+
+    private void assertBothFail(byte[] data) throws IOException
+    {
+        assertThrows(IOException.class, () -> {
+            try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+                inputStream.readAllBytes();
+            }
+        });
+
+        Path file = write("page.1700000000.txt.gz", data);
+        assertThrows(IOException.class, () -> this.decoder.decode(file));
+    }
+
+    private Path write(String fileName, byte[] data) throws IOException
+    {
+        return Files.write(this.directory.resolve(fileName), data);
+    }
+
+    private static String generateContent(int length)
+    {
+        Random random = new Random(length);
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(random.nextInt(10) == 0 ? "\n" : "word" + random.nextInt(1000) + ' ');
+        }
+
+        return builder.toString();
+    }
+
+    private static byte[] gzip(String content) throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(data)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return data.toByteArray();
+    }
+
+    private static byte[] deflate(String content) throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new DeflaterOutputStream(data, new Deflater(Deflater.DEFAULT_COMPRESSION,
+            true))) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return data.toByteArray();
+    }
+
+    /**
+     * @return a gzip member with the optional header fields of the flags, which {@link GZIPOutputStream} never writes
+     */
+    private static byte[] gzipMember(int flags, byte[] deflated, String content)
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.writeBytes(new byte[] { 0x1f, (byte) 0x8b, 8, (byte) flags, 0, 0, 0, 0, 0, (byte) 0xff });
+        if ((flags & FLAG_EXTRA) != 0) {
+            byte[] extra = { 'A', 'B', 3, 0, 1, 2, 3 };
+            writeShort(data, extra.length);
+            data.writeBytes(extra);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            data.writeBytes("page.txt\0".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            data.writeBytes("A comment\0".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(data.toByteArray());
+            writeShort(data, (int) headerCrc.getValue());
+        }
+        data.writeBytes(deflated);
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        writeInt(data, (int) crc.getValue());
+        writeInt(data, bytes.length);
+
+        return data.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream data, int value)
+    {
+        data.write(value);
+        data.write(value >>> 8);
+    }
+
+    private static void writeInt(ByteArrayOutputStream data, int value)
+    {
+        writeShort(data, value);
+        writeShort(data, value >>> 16);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiConversionCache.Key;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for {@link DokuWikiConversionCache}.
+ *
+ * @version $Id$
+ */
+class DokuWikiConversionCacheTest
+{
+    private static final String PAGE = "ns:page";
+
+    /**
+     * The estimated size of an entry of {@link #PAGE} with converted content of 10 characters.
+     */
+    private static final long ENTRY_SIZE = 160 + 2 * (10 + PAGE.length());
+
+    private static final Key KEY_A = DokuWikiConversionCache.createKey("a", PAGE);
+
+    private static final Key KEY_B = DokuWikiConversionCache.createKey("b", PAGE);
+
+    private static final Key KEY_C = DokuWikiConversionCache.createKey("c", PAGE);
+
+    @Test
+    void keys()
+    {
+        assertEquals(KEY_A, DokuWikiConversionCache.createKey("a", PAGE));
+        assertEquals(KEY_A.hashCode(), DokuWikiConversionCache.createKey("a", PAGE).hashCode());
+        assertNotEquals(KEY_A, KEY_B);
+        // Relative links are resolved against the page, so the same content of another page is another entry.
+        assertNotEquals(KEY_A, DokuWikiConversionCache.createKey("a", "ns:other"));
+    }
+
+    @Test
+    void getAndStatistics()
+    {
+        DokuWikiConversionCache cache = new DokuWikiConversionCache(10 * ENTRY_SIZE);
+
+        assertNull(cache.get(KEY_A));
+        cache.put(KEY_A, "0123456789");
+
+        assertEquals("0123456789", cache.get(KEY_A));
+        assertEquals("0123456789", cache.get(DokuWikiConversionCache.createKey("a", PAGE)));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    void evictLeastRecentlyUsedWhenExceedingBudget()
+    {
+        DokuWikiConversionCache cache = new DokuWikiConversionCache(2 * ENTRY_SIZE);
+        cache.put(KEY_A, "aaaaaaaaaa");
+        cache.put(KEY_B, "bbbbbbbbbb");
+
+        // Exactly at the budget, nothing is evicted.
+        assertEquals(2, cache.getEntryCount());
+
+        // Make A the most recently used entry so that B is evicted.
+        assertEquals("aaaaaaaaaa", cache.get(KEY_A));
+        cache.put(KEY_C, "cccccccccc");
+
+        assertEquals(2, cache.getEntryCount());
+        assertNull(cache.get(KEY_B));
+        assertEquals("aaaaaaaaaa", cache.get(KEY_A));
+        assertEquals("cccccccccc", cache.get(KEY_C));
+    }
+
+    @Test
+    void evictSeveralEntriesForALargeEntry()
+    {
+        DokuWikiConversionCache cache = new DokuWikiConversionCache(3 * ENTRY_SIZE);
+        cache.put(KEY_A, "aaaaaaaaaa");
+        cache.put(KEY_B, "bbbbbbbbbb");
+        cache.put(KEY_C, "cccccccccc");
+
+        // As large as the whole budget.
+        Key large = DokuWikiConversionCache.createKey("large", PAGE);
+        String largeContent = "x".repeat((int) ENTRY_SIZE + 10);
+        cache.put(large, largeContent);
+
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(largeContent, cache.get(large));
+        assertNull(cache.get(KEY_A));
+        assertNull(cache.get(KEY_B));
+        assertNull(cache.get(KEY_C));
+    }
+
+    @Test
+    void replaceExistingKey()
+    {
+        DokuWikiConversionCache cache = new DokuWikiConversionCache(2 * ENTRY_SIZE);
+        cache.put(KEY_A, "aaaaaaaaaa");
+        cache.put(KEY_B, "bbbbbbbbbb");
+
+        // Replacing an entry with content of the same size must not count the replaced content.
+        cache.put(KEY_A, "AAAAAAAAAA");
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals("AAAAAAAAAA", cache.get(KEY_A));
+        assertEquals("bbbbbbbbbb", cache.get(KEY_B));
+
+        // Replacing with larger content evicts the least recently used other entry.
+        assertEquals("AAAAAAAAAA", cache.get(KEY_A));
+        cache.put(KEY_B, "bbbbbbbbbbb");
+
+        assertEquals(1, cache.getEntryCount());
+        assertNull(cache.get(KEY_A));
+        assertEquals("bbbbbbbbbbb", cache.get(KEY_B));
+    }
+
+    @Test
+    void skipEntriesLargerThanTheBudget()
+    {
+        DokuWikiConversionCache cache = new DokuWikiConversionCache(ENTRY_SIZE);
+        cache.put(KEY_A, "aaaaaaaaaa");
+
+        // The entry doesn't fit, it must neither be cached nor evict the cached entries.
+        cache.put(KEY_B, "bbbbbbbbbbb");
+
+        assertEquals(1, cache.getEntryCount());
+        assertNull(cache.get(KEY_B));
+        assertEquals("aaaaaaaaaa", cache.get(KEY_A));
+    }
+}
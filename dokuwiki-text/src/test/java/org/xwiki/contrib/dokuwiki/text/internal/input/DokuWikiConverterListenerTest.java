@@ -0,0 +1,159 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiStreamParser;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DokuWikiConverterListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@AllComponents
+class DokuWikiConverterListenerTest
+{
+    private static final List<String> PAGES = List.of("ns:a", "ns:b", "ns:a:b", "other:a", "start");
+
+    private static final String CONTENT = "[[~sub]] [[~sub:page#anchor|label]] {{~image.png?50}} [[sibling]] "
+        + "[[.:sibling]] [[..:up]] [[:top:page]] [[ns:a]] [[sibling?do=edit]] {{image.png}} {{:top:image.png}} "
+        + "{{..:image.png|caption}}";
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> serializer;
+
+    private StreamParser parser;
+
+    private PrintRendererFactory rendererFactory;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        when(this.serializer.serialize(any())).thenAnswer(invocation -> invocation.getArgument(0).toString());
+        this.parser = this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+        this.rendererFactory = this.componentManager.getInstance(PrintRendererFactory.class, "xwiki/2.1");
+    }
+
+    @Test
+    void resolveSameTargetsWithCache() throws Exception
+    {
+        DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(100);
+        DokuWikiReferenceInterner interner = new DokuWikiReferenceInterner();
+
+        for (String page : PAGES) {
+            assertEquals(convert(CONTENT, page, null, null), convert(CONTENT, page, cache, interner), page);
+        }
+        long misses = cache.getMisses();
+
+        // All targets are resolved from the cache the second time.
+        for (String page : PAGES) {
+            assertEquals(convert(CONTENT, page, null, null), convert(CONTENT, page, cache, interner), page);
+        }
+        assertEquals(misses, cache.getMisses());
+        assertEquals(misses, cache.getEntryCount());
+    }
+
+    @Test
+    void resolvePageRelativeTargetsPerPage() throws Exception
+    {
+        DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(100);
+
+        String first = convert("[[~sub]] {{~image.png}}", "ns:a", cache, null);
+        String second = convert("[[~sub]] {{~image.png}}", "ns:b", cache, null);
+
+        assertNotEquals(first, second);
+        assertEquals(convert("[[~sub]] {{~image.png}}", "ns:b", null, null), second);
+        long misses = cache.getMisses();
+
+        // Targets that are relative to the namespace are shared by the pages of the namespace.
+        convert("[[sibling]] {{image.png}}", "ns:a", cache, null);
+        assertEquals(misses + 2, cache.getMisses());
+        convert("[[sibling]] {{image.png}}", "ns:b", cache, null);
+        assertEquals(misses + 2, cache.getMisses());
+    }
+
+    @Test
+    void classifyMediaWithMimeTypesOfListener() throws Exception
+    {
+        String content = "{{ns:drawing.xyz}} {{ns:photo.jpg}} ((footnote {{ns:drawing.xyz}}))";
+        Map<String, String> mimeTypes = Map.of("xyz", "image/x-xyz");
+
+        String bundled = convert(content, PAGES.get(0), null, null, null);
+        String imported = convert(content, PAGES.get(0), null, null, mimeTypes);
+
+        // Only the wiki of the import knows that the extension is an image, also in footnotes.
+        assertEquals(2, StringUtils.countMatches(bundled, "[[attach:"));
+        assertEquals(0, StringUtils.countMatches(imported, "[[attach:"));
+        assertEquals(3, StringUtils.countMatches(imported, "[[image:"));
+
+        // The mime types are per listener.
+        assertEquals(bundled, convert(content, PAGES.get(0), null, null, null));
+    }
+
+    private String convert(String content, String page, DokuWikiLinkResolutionCache cache,
+        DokuWikiReferenceInterner interner) throws Exception
+    {
+        return convert(content, page, cache, interner, null);
+    }
+
+    private String convert(String content, String page, DokuWikiLinkResolutionCache cache,
+        DokuWikiReferenceInterner interner, Map<String, String> mimeTypes) throws Exception
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        DokuWikiConverterListener listener = this.componentManager.getInstance(DokuWikiConverterListener.class);
+        listener.setDokuWikiReference(page);
+        listener.setLinkResolutionCache(cache);
+        listener.setReferenceInterner(interner);
+        listener.setMimeTypes(mimeTypes);
+        listener.setWrappedListener(this.rendererFactory.createRenderer(printer));
+        try {
+            this.parser.parse(new StringReader(content), listener);
+        } catch (ParseException e) {
+            throw new AssertionError(e);
+        }
+
+        return printer.toString();
+    }
+}
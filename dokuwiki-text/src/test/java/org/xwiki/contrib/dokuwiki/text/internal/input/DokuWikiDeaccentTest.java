@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link DokuWikiDeaccent}.
+ *
+ * @version $Id$
+ */
+class DokuWikiDeaccentTest
+{
+    private static final String[] SEARCHES = DokuWikiDeaccent.getSearches();
+
+    private static final String[] REPLACEMENTS = DokuWikiDeaccent.getReplacements();
+
+    private final DokuWikiDeaccent deaccent = new DokuWikiDeaccent();
+
+    @Test
+    void table()
+    {
+        assertEquals(105, SEARCHES.length);
+        assertEquals(SEARCHES.length, REPLACEMENTS.length);
+
+        Set<String> distinctSearches = new HashSet<>();
+        for (String search : SEARCHES) {
+            assertEquals(1, search.length(), search);
+            assertTrue(distinctSearches.add(search), search);
+        }
+    }
+
+    @Test
+    void everyMapping()
+    {
+        for (int i = 0; i < SEARCHES.length; i++) {
+            assertEquals(REPLACEMENTS[i], this.deaccent.deaccent(SEARCHES[i]), SEARCHES[i]);
+            assertEquals("a" + REPLACEMENTS[i] + "b", this.deaccent.deaccent("a" + SEARCHES[i] + "b"), SEARCHES[i]);
+        }
+
+        assertEquals(String.join("", REPLACEMENTS), this.deaccent.deaccent(String.join("", SEARCHES)));
+    }
+
+    @Test
+    void everyCharacter()
+    {
+        StringBuilder allCharacters = new StringBuilder();
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            String string = String.valueOf((char) c);
+            assertEquals(StringUtils.replaceEach(string, SEARCHES, REPLACEMENTS), this.deaccent.deaccent(string),
+                () -> String.format("U+%04X", (int) string.charAt(0)));
+            allCharacters.append((char) c);
+        }
+
+        String string = allCharacters.toString();
+        assertEquals(StringUtils.replaceEach(string, SEARCHES, REPLACEMENTS), this.deaccent.deaccent(string));
+    }
+
+    @Test
+    void asciiIsReturnedUnchanged()
+    {
+        String id = "wiki:syntax_page-1.2";
+        assertSame(id, this.deaccent.deaccent(id));
+        assertSame("", this.deaccent.deaccent(""));
+        assertNull(this.deaccent.deaccent(null));
+    }
+
+    @Test
+    void mixedContent()
+    {
+        assertEquals("uenicoede page name", this.deaccent.deaccent("ünïcödé pâge nàme"));
+        assertEquals("strasse_中文_aeoeue", this.deaccent.deaccent("straße_中文_äöü"));
+        assertEquals("😀e", this.deaccent.deaccent("😀é"));
+    }
+}
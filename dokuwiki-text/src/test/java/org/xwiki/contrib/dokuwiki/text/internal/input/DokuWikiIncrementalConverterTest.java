@@ -0,0 +1,167 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiBlockSplitter;
+import org.xwiki.contrib.dokuwiki.syntax.internal.parser.DokuWikiStreamParser;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link DokuWikiIncrementalConverter}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@AllComponents
+class DokuWikiIncrementalConverterTest
+{
+    /**
+     * Lines to generate the revisions from, including the start and end of blocks that span several lines and empty
+     * lines that separate the groups of blocks.
+     */
+    private static final String[] LINES = {
+        "", "", "", "Some plain text", "text with **bold", "and** //italic// __underlined__ ''monospace''",
+        "====== Title ======", "===== Heading =====", "== Small ==", "  * item", "  - numbered", "    * nested",
+        "  preformatted", "> quote", ">> nested quote", "^ head 1 ^ head 2 ^", "| cell 1 | cell 2 |", "----",
+        "<code java>", "int a;", "</code>", "<file>", "</file>", "((footnote", "continued))", "<nowiki>", "</nowiki>",
+        "%%", "<html>", "</html>", "[[ns:page|label]] and [[http://example.org]]", "{{ns:image.png?50|caption}}",
+        "{{rss>http://example.org/feed}}", "forced\\\\ line break", "<del>deleted</del> <sub>sub</sub>",
+        "~~NOTOC~~", "<admin@example.org> www.example.com", "</del> unmatched end", "</sup>"
+    };
+
+    private static final String[] FRAGMENTS = {
+        "**", "//", "__", "''", "<code>", "</code>", "((", "))", "%%", "\n", "\n\n", "  * ", "^", "|", "====== ", "[[",
+        "]]", "{{", "}}", "<nowiki>", "</nowiki>", "<del>", "</del>", "\\\\ ", ">", " "
+    };
+
+    private static final int SEQUENCE_COUNT = 300;
+
+    private static final int REVISION_COUNT = 8;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    private DokuWikiBlockSplitter blockSplitter;
+
+    private StreamParser parser;
+
+    private PrintRendererFactory rendererFactory;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.blockSplitter = this.componentManager.getInstance(DokuWikiBlockSplitter.class);
+        this.parser = this.componentManager.getInstance(StreamParser.class, DokuWikiStreamParser.SYNTAX_STRING);
+        this.rendererFactory = this.componentManager.getInstance(PrintRendererFactory.class, "xwiki/2.1");
+    }
+
+    @Test
+    void sameAsFullConversionOfEditedRevisions() throws Exception
+    {
+        Random random = new Random(42);
+        int reusedGroupCount = 0;
+
+        for (int i = 0; i < SEQUENCE_COUNT; i++) {
+            DokuWikiIncrementalConverter incrementalConverter =
+                new DokuWikiIncrementalConverter(this.blockSplitter, this::convert);
+            List<String> lines = new ArrayList<>();
+            int lineCount = 1 + random.nextInt(30);
+            for (int j = 0; j < lineCount; j++) {
+                lines.add(LINES[random.nextInt(LINES.length)]);
+            }
+
+            for (int revision = 0; revision < REVISION_COUNT; revision++) {
+                String content = String.join("\n", lines);
+                if (random.nextInt(5) == 0) {
+                    // Like a revision found in the conversion cache.
+                    incrementalConverter.skip(content);
+                } else {
+                    assertEquals(convert(content), incrementalConverter.convert(content), content);
+                }
+                edit(lines, random);
+            }
+
+            reusedGroupCount += incrementalConverter.getReusedGroupCount();
+        }
+
+        assertTrue(reusedGroupCount > 0);
+    }
+
+    @Test
+    void convertWholeContentWhenGroupCannotBeConvertedSeparately() throws Exception
+    {
+        // The placeholder paragraph doesn't start the converted groups.
+        DokuWikiIncrementalConverter incrementalConverter =
+            new DokuWikiIncrementalConverter(this.blockSplitter, content -> "converted:" + content);
+
+        assertEquals("converted:a\n\nb", incrementalConverter.convert("a\n\nb"));
+        assertEquals("converted:a\n\nc", incrementalConverter.convert("a\n\nc"));
+    }
+
+    private void edit(List<String> lines, Random random)
+    {
+        int index = random.nextInt(lines.size());
+        switch (random.nextInt(5)) {
+            case 0:
+                lines.add(index, LINES[random.nextInt(LINES.length)]);
+                break;
+            case 1:
+                if (lines.size() > 1) {
+                    lines.remove(index);
+                }
+                break;
+            case 2:
+                lines.set(index, LINES[random.nextInt(LINES.length)]);
+                break;
+            case 3:
+                lines.addAll(index, new ArrayList<>(lines.subList(index, lines.size())));
+                break;
+            default:
+                String line = lines.get(index);
+                int position = random.nextInt(line.length() + 1);
+                lines.set(index,
+                    line.substring(0, position) + FRAGMENTS[random.nextInt(FRAGMENTS.length)] + line.substring(position));
+        }
+    }
+
+    private String convert(String content) throws ParseException
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.parser.parse(new StringReader(content), this.rendererFactory.createRenderer(printer));
+        return printer.toString();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiLinkResolutionCache.Key;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiLinkResolutionCache.TargetType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link DokuWikiLinkResolutionCache}.
+ *
+ * @version $Id$
+ */
+class DokuWikiLinkResolutionCacheTest
+{
+    private static final String NAMESPACE = "wiki:ns";
+
+    private static final int KEY_COUNT = 1000;
+
+    @Test
+    void getCachedReference()
+    {
+        DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(10);
+        ResourceReference reference = new ResourceReference("Wiki.Ns.Page", ResourceType.DOCUMENT);
+        cache.put(key(TargetType.LINK, NAMESPACE, "page"), reference);
+
+        assertSame(reference, cache.get(key(TargetType.LINK, NAMESPACE, "page")));
+        assertNull(cache.get(key(TargetType.MEDIA, NAMESPACE, "page")));
+        assertNull(cache.get(key(TargetType.LINK, "wiki", "page")));
+        assertNull(cache.get(key(TargetType.LINK, NAMESPACE, "other")));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0.25, cache.getHitRate());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    void keepAtMostMaxEntriesWithFewerEntriesThanSegments()
+    {
+        for (int maxEntries : new int[] { 1, 5, 15, 16, 20, 100 }) {
+            DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(maxEntries);
+            List<Key> keys = putKeys(cache, KEY_COUNT);
+
+            // With many more keys than entries, all segments are full.
+            assertEquals(maxEntries, cache.getEntryCount(), "Maximum " + maxEntries);
+
+            int cachedCount = 0;
+            for (Key key : keys) {
+                if (cache.get(key) != null) {
+                    cachedCount++;
+                }
+            }
+            assertEquals(maxEntries, cachedCount, "Maximum " + maxEntries);
+        }
+    }
+
+    @Test
+    void cacheNothingWithoutEntries()
+    {
+        DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(0);
+        List<Key> keys = putKeys(cache, 10);
+
+        assertEquals(0, cache.getEntryCount());
+        assertNull(cache.get(keys.get(9)));
+        assertEquals(0, cache.getHitRate());
+    }
+
+    @Test
+    void evictLeastRecentlyUsedEntry()
+    {
+        // 16 segments with two entries each.
+        DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(32);
+        List<Key> keys = getKeysOfSameSegment(3);
+        ResourceReference reference = new ResourceReference("Wiki.Ns.Page", ResourceType.DOCUMENT);
+
+        cache.put(keys.get(0), reference);
+        cache.put(keys.get(1), reference);
+        assertSame(reference, cache.get(keys.get(0)));
+        cache.put(keys.get(2), reference);
+
+        assertSame(reference, cache.get(keys.get(0)));
+        assertNull(cache.get(keys.get(1)));
+        assertSame(reference, cache.get(keys.get(2)));
+    }
+
+    @Test
+    void replaceExistingEntry()
+    {
+        DokuWikiLinkResolutionCache cache = new DokuWikiLinkResolutionCache(1);
+        ResourceReference previousReference = new ResourceReference("Wiki.Ns.Page", ResourceType.DOCUMENT);
+        ResourceReference reference = new ResourceReference("Wiki.Ns.Other", ResourceType.DOCUMENT);
+        cache.put(key(TargetType.LINK, NAMESPACE, "page"), previousReference);
+        cache.put(key(TargetType.LINK, NAMESPACE, "page"), reference);
+
+        assertSame(reference, cache.get(key(TargetType.LINK, NAMESPACE, "page")));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    /**
+     * @return keys that are stored in the same segment of a cache with 16 segments, selected like the cache does
+     */
+    private static List<Key> getKeysOfSameSegment(int count)
+    {
+        List<Key> keys = new ArrayList<>(count);
+        for (int i = 0; keys.size() < count; i++) {
+            Key key = key(TargetType.LINK, NAMESPACE, "page" + i);
+            int hash = key.hashCode() ^ (key.hashCode() >>> 16);
+            if (Math.floorMod(hash, 16) == 0) {
+                keys.add(key);
+            }
+        }
+
+        return keys;
+    }
+
+    private static List<Key> putKeys(DokuWikiLinkResolutionCache cache, int count)
+    {
+        List<Key> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Key key = key(i % 2 == 0 ? TargetType.LINK : TargetType.MEDIA, NAMESPACE + i % 7, "target" + i);
+            cache.put(key, new ResourceReference(String.valueOf(i), ResourceType.DOCUMENT));
+            keys.add(key);
+        }
+
+        return keys;
+    }
+
+    private static Key key(TargetType type, String context, String target)
+    {
+        return DokuWikiLinkResolutionCache.createKey(type, context, target);
+    }
+}
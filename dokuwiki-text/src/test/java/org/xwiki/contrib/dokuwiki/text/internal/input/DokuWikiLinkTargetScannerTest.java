@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.dokuwiki.text.internal.input.DokuWikiLinkTargetScanner.LinkType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Differential tests of {@link DokuWikiLinkTargetScanner} against the regular expression based implementation it
+ * replaced.
+ *
+ * @version $Id$
+ */
+class DokuWikiLinkTargetScannerTest
+{
+    private static final String[] PAGE_REFERENCES = {
+        "start", "page", "wiki:syntax", "wiki:namespace:page", "a:b:c:d", ".hidden:page", "..:page", "Ns:Pâge", ""
+    };
+
+    /**
+     * The fragments the generated targets are made of, with the characters that have a special meaning in any step
+     * of the classification or normalization.
+     */
+    private static final String[] FRAGMENTS = {
+        "a", "Z", "wiki", "Page", "0", "42", ".", "..", ":", "/", ";", "~", "?", "#", "@", "_", "__", "-", "+", "://",
+        "http", "mailto", " ", "\t", "\n", "\r", "\f", "\u000B", "\u0085", "\u2028", "\u2029", "\u00A0", "\u2003",
+        "é", "Ü", "ß", "İ", "I", "Σ", "ς", "ǅ", "中文", "٣", "Ⅻ", "½", "\uD83D\uDE00", "\uD835\uDC00", "\uD800",
+        "\uDC00", "%", "$", "!", "'", "\"", "*", "\u0000", "\u001C", "start"
+    };
+
+    private static final String[] TARGETS = {
+        "", " ", "syntax", "wiki:syntax", "wiki:syntax#internal", ".:sibling", "..:parent:page",
+        ":top:level:namespace:", "Ünïcödé Pâge Nàme", "#section", "http://www.google.com", "andi@splitbrain.org",
+        "andi@splitbrain.org?subject=Hello World", "a@b?x\ny", "a@b?x y\u2028", "a@b\u2028c d", "~sub", "~",
+        "...:..page", "....page", ".", "..", ":", ":::", "a:..:", "a::..:b", "ns/page;sub", "+x://y", "://x",
+        "-.+://x", "ä://x", "x @y", "@ab", "a@", "a@@", "a@?b c", "wiki:dokuwiki-128.png", ":wiki:sub space:Image Fïle.jpg"
+    };
+
+    private static final int GENERATED_TARGET_COUNT = 100000;
+
+    private static final int MAX_FRAGMENT_COUNT = 12;
+
+    // The previous implementation, kept as reference.
+
+    private static final Pattern EXTERNAL_URL_PATTERN =
+        Pattern.compile("^([a-z0-9\\-.+]+?)://", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern EMAIL_ADDRESS_PATTERN = Pattern.compile("^\\S+@\\S+(?:\\?.*)?$");
+
+    private static final Pattern INITIAL_DOT_NORMALIZATION_PATTERN = Pattern.compile("^((\\.+:)*+)(\\.+)(?=[^:.])");
+
+    private static final Pattern SPECIAL_PATTERN = Pattern.compile("[^\\p{L}\\p{N}_:.-]");
+
+    private static final Pattern REPEATED_UNDERSCORE_PATTERN = Pattern.compile("_+");
+
+    private final DokuWikiDeaccent deaccent = new DokuWikiDeaccent();
+
+    private final DokuWikiLinkTargetScanner scanner = new DokuWikiLinkTargetScanner(this.deaccent);
+
+    @Test
+    void knownTargets()
+    {
+        for (String pageReference : PAGE_REFERENCES) {
+            for (String target : TARGETS) {
+                assertSameResult(target, pageReference);
+            }
+        }
+    }
+
+    @Test
+    void generatedTargets()
+    {
+        for (String target : generateTargets(new Random(42))) {
+            for (String pageReference : PAGE_REFERENCES) {
+                assertSameResult(target, pageReference);
+            }
+        }
+    }
+
+    @Test
+    void generatedTargetsWithTurkishLocale()
+    {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            for (String target : generateTargets(new Random(7))) {
+                assertSameResult(target, "Wiki:Index");
+            }
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static List<String> generateTargets(Random random)
+    {
+        List<String> targets = new ArrayList<>(GENERATED_TARGET_COUNT);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < GENERATED_TARGET_COUNT; i++) {
+            builder.setLength(0);
+            int fragmentCount = random.nextInt(MAX_FRAGMENT_COUNT) + 1;
+            for (int j = 0; j < fragmentCount; j++) {
+                builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            targets.add(builder.toString());
+        }
+        return targets;
+    }
+
+    private void assertSameResult(String target, String pageReference)
+    {
+        String contextNamespace = pageReference.contains(":") ? StringUtils.substringBeforeLast(pageReference, ":")
+            : "";
+        String trimmedTarget = target.trim();
+
+        assertEquals(classify(trimmedTarget), this.scanner.classify(trimmedTarget), () -> escape(trimmedTarget));
+        assertEquals(resolveAndCleanDokuWikiId(target, pageReference, contextNamespace),
+            this.scanner.normalizeId(target, pageReference, contextNamespace),
+            () -> escape(target) + " on page " + pageReference);
+    }
+
+    private static String escape(String string)
+    {
+        return string.chars().mapToObj(c -> c < ' ' || c > '~' ? String.format("\\u%04X", c)
+            : String.valueOf((char) c)).collect(Collectors.joining());
+    }
+
+    private static LinkType classify(String linkTarget)
+    {
+        if (EXTERNAL_URL_PATTERN.matcher(linkTarget).find()) {
+            return LinkType.URL;
+        } else if (EMAIL_ADDRESS_PATTERN.matcher(linkTarget).find()) {
+            return LinkType.EMAIL_ADDRESS;
+        } else if (StringUtils.isBlank(linkTarget) || linkTarget.startsWith("#")) {
+            return LinkType.SECTION;
+        } else {
+            return LinkType.PAGE;
+        }
+    }
+
+    private String resolveAndCleanDokuWikiId(String linkTarget, String dokuWikiReference, String contextNamespace)
+    {
+        String id = linkTarget.replace('/', ':').replace(';', ':');
+
+        if (id.startsWith("~")) {
+            id = dokuWikiReference + ":" + id.substring(1);
+        }
+        if (id.startsWith(".")) {
+            id = INITIAL_DOT_NORMALIZATION_PATTERN.matcher(id).replaceFirst("$1$3:");
+            id = contextNamespace + ":" + id;
+        }
+        if (!id.contains(":")) {
+            id = contextNamespace + ":" + id;
+        }
+
+        List<String> idParts = new ArrayList<>();
+        for (String part : id.split(":")) {
+            if (part.equals("..")) {
+                if (!idParts.isEmpty()) {
+                    idParts.remove(idParts.size() - 1);
+                }
+            } else if (!part.equals(".")) {
+                idParts.add(part);
+            }
+        }
+
+        if (idParts.isEmpty()) {
+            idParts.add("start");
+        }
+
+        return idParts.stream()
+            .map(this::cleanIDPart)
+            .filter(StringUtils::isNotBlank)
+            .collect(Collectors.joining(":"));
+    }
+
+    private String cleanIDPart(String input)
+    {
+        String id = input.trim().toLowerCase();
+        id = this.deaccent.deaccent(id);
+        id = SPECIAL_PATTERN.matcher(id).replaceAll("_");
+        id = REPEATED_UNDERSCORE_PATTERN.matcher(id).replaceAll("_");
+        return StringUtils.strip(id, ":._-");
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.parser.ParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link DokuWikiMetadataReader}.
+ *
+ * @version $Id$
+ */
+class DokuWikiMetadataReaderTest
+{
+    private static final String DATE = "date";
+
+    private static final String CREATED = "created";
+
+    private static final String CREATOR = "creator";
+
+    private static final String TITLE = "title";
+
+    @Test
+    void readSelectedNestedPathsAndSkipSubtrees() throws ParseException
+    {
+        String data = array(
+            str("current"), array(
+                str(DATE), array(str(CREATED), "i:1700000000;", str("modified"), "i:1700000100;"),
+                str("relation"), array(str("references"), array(str("wiki:syntax"), "b:1;")),
+                str(CREATOR), str("Jane Doe"),
+                str("description"), array(str("abstract"), str("Some text")),
+                str(TITLE), str("Ignored")),
+            str("persistent"), array(str(TITLE), str("Also ignored")));
+
+        Map<String, Object> values = read(data, List.of("current", DATE, CREATED), List.of("current", CREATOR));
+
+        assertEquals(Map.of("current", Map.of(DATE, Map.of(CREATED, 1700000000L), CREATOR, "Jane Doe")), values);
+    }
+
+    @Test
+    void readObjects() throws ParseException
+    {
+        String data = array(str(DATE), "O:8:\"stdClass\":2:{" + str(CREATED) + "i:42;" + str("modified")
+            + "O:8:\"stdClass\":0:{}}", str("other"), "O:3:\"Foo\":1:{" + str("x") + "s:1:\"y\";}");
+
+        assertEquals(Map.of(DATE, Map.of(CREATED, 42L)), read(data, List.of(DATE, CREATED)));
+    }
+
+    @Test
+    void readMultibyteStrings() throws ParseException
+    {
+        String creator = "Jérôme 中文 😀";
+        String data = array(str(CREATOR), str(creator), str(TITLE), str("\";\"ü"));
+
+        assertEquals(Map.of(CREATOR, creator, TITLE, "\";\"ü"), read(data, List.of(CREATOR), List.of(TITLE)));
+    }
+
+    @Test
+    void readStringsWithMismatchingLength() throws ParseException
+    {
+        // The lengths are counted in characters, like after converting a file from ISO-8859-1 to UTF-8.
+        String data = "a:3:{s:7:\"creator\";s:6:\"Jérôme\";s:5:\"title\";s:2:\"Ça\";s:4:\"date\";i:7;}";
+
+        assertEquals(Map.of(CREATOR, "Jérôme", TITLE, "Ça", DATE, 7L),
+            read(data, List.of(CREATOR), List.of(TITLE), List.of(DATE)));
+    }
+
+    @Test
+    void readScalars() throws ParseException
+    {
+        String data = array(str("true"), "b:1;", str("false"), "b:0;", str("null"), "N;", str("double"), "d:1.5;",
+            str("infinite"), "d:INF;", str("large"), "i:99999999999999999999;", str("reference"), "r:2;",
+            str("objectReference"), "R:3;", "i:7;", "i:-3;");
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("true", true);
+        expected.put("false", false);
+        expected.put("null", null);
+        expected.put("double", 1.5);
+        expected.put("infinite", "INF");
+        expected.put("large", 1e20);
+        expected.put("reference", null);
+        expected.put("objectReference", null);
+        expected.put("7", -3L);
+
+        assertEquals(expected, read(data, List.of("true"), List.of("false"), List.of("null"), List.of("double"),
+            List.of("infinite"), List.of("large"), List.of("reference"), List.of("objectReference"), List.of("7")));
+    }
+
+    @Test
+    void keepValuesReadBeforeTruncation()
+    {
+        String data = array(str(CREATOR), str("Jane"), str(DATE), array(str(CREATED), "i:12;", str("modified"),
+            "i:13;"), str(TITLE), str("Title"));
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = Arrays.copyOf(bytes, data.indexOf("modified"));
+
+        DokuWikiMetadataReader reader = new DokuWikiMetadataReader(List.of(List.of(CREATOR), List.of(DATE, CREATED),
+            List.of(DATE, "modified"), List.of(TITLE)));
+        Map<String, Object> values = new HashMap<>();
+        assertThrows(ParseException.class, () -> reader.read(truncated, values));
+
+        assertEquals(Map.of(CREATOR, "Jane", DATE, Map.of(CREATED, 12L)), values);
+    }
+
+    @Test
+    void rejectDataThatIsntAnArray()
+    {
+        DokuWikiMetadataReader reader = new DokuWikiMetadataReader(List.of(List.of(TITLE)));
+        Map<String, Object> values = new HashMap<>();
+
+        assertThrows(ParseException.class, () -> reader.read(str(TITLE).getBytes(StandardCharsets.UTF_8), values));
+        assertEquals(Map.of(), values);
+    }
+
+    @SafeVarargs
+    private static Map<String, Object> read(String data, List<String>... paths) throws ParseException
+    {
+        Map<String, Object> values = new HashMap<>();
+        new DokuWikiMetadataReader(List.of(paths)).read(data.getBytes(StandardCharsets.UTF_8), values);
+        return values;
+    }
+
+    private static String str(String value)
+    {
+        return "s:" + value.getBytes(StandardCharsets.UTF_8).length + ":\"" + value + "\";";
+    }
+
+    private static String array(String... entries)
+    {
+        return "a:" + entries.length / 2 + ":{" + String.join("", entries) + "}";
+    }
+}
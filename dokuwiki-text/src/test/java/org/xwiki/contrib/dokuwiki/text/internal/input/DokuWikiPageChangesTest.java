@@ -0,0 +1,105 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link DokuWikiPageChanges}.
+ *
+ * @version $Id$
+ */
+class DokuWikiPageChangesTest
+{
+    private static final String CHANGES_FILE = "page.changes";
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void readChanges() throws IOException
+    {
+        DokuWikiPageChanges changes = read("1700000000\t127.0.0.1\tC\twiki:page\tjane\tcreated\t\t42\n"
+            + "1700000100\t127.0.0.1\te\twiki:page\t\ttypo\n"
+            + "1700000100\t127.0.0.1\tE\twiki:page\tjohn\tlogged twice\n"
+            + "not a change\n");
+
+        DokuWikiPageChanges.Change creation = changes.get(1700000000L);
+        assertEquals("jane", creation.getUser());
+        assertEquals("created", creation.getSummary());
+        assertEquals("C", creation.getType());
+        assertFalse(creation.isMinor());
+
+        // The last line wins.
+        DokuWikiPageChanges.Change edit = changes.get(1700000100L);
+        assertEquals("john", edit.getUser());
+        assertEquals("logged twice", edit.getSummary());
+        assertNull(changes.get(1L));
+    }
+
+    @Test
+    void skipDatesThatOverflow() throws IOException
+    {
+        DokuWikiPageChanges changes = read("99999999999999999999\t127.0.0.1\tE\twiki:page\tjane\toverflow\n"
+            + "1700000000\t127.0.0.1\te\twiki:page\tjane\tminor\n");
+
+        assertTrue(changes.get(1700000000L).isMinor());
+    }
+
+    @Test
+    void replaceMalformedBytes() throws IOException
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.writeBytes("1700000000\t127.0.0.1\tE\twiki:page\tjane\tcaf".getBytes(StandardCharsets.US_ASCII));
+        // A summary still encoded in ISO-8859-1.
+        content.write(0xe9);
+        content.writeBytes("\n1700000100\t127.0.0.1\tE\twiki:page\tjohn\tnext\n".getBytes(StandardCharsets.US_ASCII));
+
+        DokuWikiPageChanges changes = read(content.toByteArray());
+
+        assertEquals("caf\uFFFD", changes.get(1700000000L).getSummary());
+        assertEquals("john", changes.get(1700000100L).getUser());
+    }
+
+    private DokuWikiPageChanges read(String content) throws IOException
+    {
+        return read(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DokuWikiPageChanges read(byte[] content) throws IOException
+    {
+        Path file = this.directory.resolve(CHANGES_FILE);
+        Files.write(file, content);
+
+        return DokuWikiPageChanges.read(file);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.dokuwiki.text.internal.input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link DokuWikiReferenceInterner}.
+ *
+ * @version $Id$
+ */
+class DokuWikiReferenceInternerTest
+{
+    private final List<String> serializedIds = new ArrayList<>();
+
+    private final UnaryOperator<String> documentSerializer = id -> serialize("Document ", id);
+
+    private final UnaryOperator<String> attachmentSerializer = id -> serialize("Attachment ", id);
+
+    @Test
+    void serializeEachIdOnce()
+    {
+        DokuWikiReferenceInterner interner = new DokuWikiReferenceInterner();
+
+        String reference = interner.getDocumentReference("ns:page", this.documentSerializer);
+        assertEquals("Document ns:page", reference);
+        assertSame(reference, interner.getDocumentReference("ns:page", this.documentSerializer));
+        assertEquals("Document ns:other", interner.getDocumentReference("ns:other", this.documentSerializer));
+
+        // Documents and attachments are separate even for the same id.
+        String attachmentReference = interner.getAttachmentReference("ns:page", this.attachmentSerializer);
+        assertEquals("Attachment ns:page", attachmentReference);
+        assertSame(attachmentReference, interner.getAttachmentReference("ns:page", this.attachmentSerializer));
+
+        assertEquals(List.of("ns:page", "ns:other", "ns:page"), this.serializedIds);
+        assertEquals(3, interner.getEntryCount());
+    }
+
+    @Test
+    void serializeWithoutKeepingBeyondMaxEntries()
+    {
+        DokuWikiReferenceInterner interner = new DokuWikiReferenceInterner(2);
+
+        String first = interner.getDocumentReference("a", this.documentSerializer);
+        interner.getDocumentReference("b", this.documentSerializer);
+        String third = interner.getDocumentReference("c", this.documentSerializer);
+
+        // The ids that are kept are still reused, the others are serialized on each call.
+        assertSame(first, interner.getDocumentReference("a", this.documentSerializer));
+        String thirdAgain = interner.getDocumentReference("c", this.documentSerializer);
+        assertEquals(third, thirdAgain);
+        assertNotSame(third, thirdAgain);
+
+        // The maximum applies to each kind of reference.
+        interner.getAttachmentReference("c", this.attachmentSerializer);
+        interner.getAttachmentReference("c", this.attachmentSerializer);
+
+        assertEquals(List.of("a", "b", "c", "c", "c"), this.serializedIds);
+        assertEquals(3, interner.getEntryCount());
+    }
+
+    private String serialize(String prefix, String id)
+    {
+        this.serializedIds.add(id);
+        return prefix + id;
+    }
+}